@@ -16,7 +16,9 @@
 
 package org.jetbrains.kotlin.build
 
+import org.jetbrains.kotlin.incremental.ClassBytecodeInfo
 import org.jetbrains.kotlin.incremental.LocalFileKotlinClass
+import org.jetbrains.kotlin.incremental.readClassBytecodeInfo
 import org.jetbrains.kotlin.load.kotlin.ModuleMapping
 import org.jetbrains.kotlin.utils.sure
 import java.io.File
@@ -35,6 +37,8 @@ class GeneratedJvmClass<Target> (
     val outputClass = LocalFileKotlinClass.create(outputFile).sure {
         "Couldn't load KotlinClass from $outputFile; it may happen because class doesn't have valid Kotlin annotations"
     }
+
+    val bytecodeInfo: ClassBytecodeInfo by lazy { readClassBytecodeInfo(outputClass) }
 }
 
 fun File.isModuleMappingFile() = extension == ModuleMapping.MAPPING_FILE_EXT && parentFile.name == "META-INF"
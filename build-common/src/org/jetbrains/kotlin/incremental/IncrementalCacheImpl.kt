@@ -27,7 +27,6 @@ import org.jetbrains.kotlin.config.IncrementalCompilation
 import org.jetbrains.kotlin.incremental.ChangeInfo.MembersChanged
 import org.jetbrains.kotlin.incremental.ChangeInfo.Removed
 import org.jetbrains.kotlin.incremental.storage.*
-import org.jetbrains.kotlin.inline.inlineFunctionsJvmNames
 import org.jetbrains.kotlin.load.kotlin.ModuleMapping
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCache
@@ -42,7 +41,6 @@ import org.jetbrains.kotlin.serialization.deserialization.supertypes
 import org.jetbrains.kotlin.serialization.jvm.BitEncoding
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
 import org.jetbrains.kotlin.utils.singletonOrEmptyList
-import org.jetbrains.org.objectweb.asm.*
 import java.io.File
 import java.security.MessageDigest
 import java.util.*
@@ -157,14 +155,15 @@ open class IncrementalCacheImpl<Target>(
         }
 
         val header = kotlinClass.classHeader
+        val bytecodeInfo = generatedClass.bytecodeInfo
         val changesInfo = when (header.kind) {
             KotlinClassHeader.Kind.FILE_FACADE -> {
                 assert(sourceFiles.size == 1) { "Package part from several source files: $sourceFiles" }
                 packagePartMap.addPackagePart(className)
 
                 protoMap.process(kotlinClass, isPackage = true) +
-                constantsMap.process(kotlinClass, isPackage = true) +
-                inlineFunctionsMap.process(kotlinClass, isPackage = true)
+                constantsMap.process(kotlinClass, bytecodeInfo, isPackage = true) +
+                inlineFunctionsMap.process(kotlinClass, bytecodeInfo, isPackage = true)
             }
             KotlinClassHeader.Kind.MULTIFILE_CLASS -> {
                 val partNames = kotlinClass.classHeader.data?.toList()
@@ -178,8 +177,8 @@ open class IncrementalCacheImpl<Target>(
                 classFqNameToSourceMap.remove(className.fqNameForClassNameWithoutDollars)
 
                 // TODO NO_CHANGES? (delegates only)
-                constantsMap.process(kotlinClass, isPackage = true) +
-                inlineFunctionsMap.process(kotlinClass, isPackage = true)
+                constantsMap.process(kotlinClass, bytecodeInfo, isPackage = true) +
+                inlineFunctionsMap.process(kotlinClass, bytecodeInfo, isPackage = true)
             }
             KotlinClassHeader.Kind.MULTIFILE_CLASS_PART -> {
                 assert(sourceFiles.size == 1) { "Multifile class part from several source files: $sourceFiles" }
@@ -187,16 +186,16 @@ open class IncrementalCacheImpl<Target>(
                 partToMultifileFacade.set(className.internalName, header.multifileClassName!!)
 
                 protoMap.process(kotlinClass, isPackage = true) +
-                constantsMap.process(kotlinClass, isPackage = true) +
-                inlineFunctionsMap.process(kotlinClass, isPackage = true)
+                constantsMap.process(kotlinClass, bytecodeInfo, isPackage = true) +
+                inlineFunctionsMap.process(kotlinClass, bytecodeInfo, isPackage = true)
             }
             KotlinClassHeader.Kind.CLASS -> {
                 assert(sourceFiles.size == 1) { "Class is expected to have only one source file: $sourceFiles" }
                 addToClassStorage(kotlinClass, sourceFiles.first())
 
                 protoMap.process(kotlinClass, isPackage = false) +
-                constantsMap.process(kotlinClass, isPackage = false) +
-                inlineFunctionsMap.process(kotlinClass, isPackage = false)
+                constantsMap.process(kotlinClass, bytecodeInfo, isPackage = false) +
+                inlineFunctionsMap.process(kotlinClass, bytecodeInfo, isPackage = false)
             }
             else -> CompilationResult.NO_CHANGES
         }
@@ -430,27 +429,11 @@ open class IncrementalCacheImpl<Target>(
     }
 
     private inner class ConstantsMap(storageFile: File) : BasicStringMap<Map<String, Any>>(storageFile, ConstantsMapExternalizer) {
-        private fun getConstantsMap(bytes: ByteArray): Map<String, Any>? {
-            val result = HashMap<String, Any>()
-
-            ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
-                override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
-                    val staticFinal = Opcodes.ACC_STATIC or Opcodes.ACC_FINAL or Opcodes.ACC_PRIVATE
-                    if (value != null && access and staticFinal == Opcodes.ACC_STATIC or Opcodes.ACC_FINAL) {
-                        result[name] = value
-                    }
-                    return null
-                }
-            }, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
-
-            return if (result.isEmpty()) null else result
-        }
-
         operator fun contains(className: JvmClassName): Boolean =
                 className.internalName in storage
 
-        fun process(kotlinClass: LocalFileKotlinClass, isPackage: Boolean): CompilationResult {
-            return put(kotlinClass.className, getConstantsMap(kotlinClass.fileContents), isPackage)
+        fun process(kotlinClass: LocalFileKotlinClass, bytecodeInfo: ClassBytecodeInfo, isPackage: Boolean): CompilationResult {
+            return put(kotlinClass.className, bytecodeInfo.constants, isPackage)
         }
 
         private fun put(className: JvmClassName, constantsMap: Map<String, Any>?, isPackage: Boolean): CompilationResult {
@@ -641,35 +624,8 @@ open class IncrementalCacheImpl<Target>(
     }
 
     private inner class InlineFunctionsMap(storageFile: File) : BasicStringMap<Map<String, Long>>(storageFile, StringToLongMapExternalizer) {
-        private fun getInlineFunctionsMap(bytes: ByteArray): Map<String, Long> {
-            val result = HashMap<String, Long>()
-
-            val inlineFunctions = inlineFunctionsJvmNames(bytes)
-            if (inlineFunctions.isEmpty()) return emptyMap()
-
-            ClassReader(bytes).accept(object : ClassVisitor(Opcodes.ASM5) {
-                override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?): MethodVisitor? {
-                    val dummyClassWriter = ClassWriter(Opcodes.ASM5)
-
-                    return object : MethodVisitor(Opcodes.ASM5, dummyClassWriter.visitMethod(0, name, desc, null, exceptions)) {
-                        override fun visitEnd() {
-                            val jvmName = name + desc
-                            if (jvmName !in inlineFunctions) return
-
-                            val dummyBytes = dummyClassWriter.toByteArray()!!
-                            val hash = dummyBytes.md5()
-                            result[jvmName] = hash
-                        }
-                    }
-                }
-
-            }, 0)
-
-            return result
-        }
-
-        fun process(kotlinClass: LocalFileKotlinClass, isPackage: Boolean): CompilationResult {
-            return put(kotlinClass.className, getInlineFunctionsMap(kotlinClass.fileContents), isPackage)
+        fun process(kotlinClass: LocalFileKotlinClass, bytecodeInfo: ClassBytecodeInfo, isPackage: Boolean): CompilationResult {
+            return put(kotlinClass.className, bytecodeInfo.inlineFunctionHashes, isPackage)
         }
 
         private fun put(className: JvmClassName, newMap: Map<String, Long>, isPackage: Boolean): CompilationResult {
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.incremental
 
 import com.intellij.util.containers.MultiMap
 import com.intellij.util.containers.StringInterner
+import gnu.trove.TLongHashSet
 import org.jetbrains.annotations.TestOnly
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.Position
@@ -75,8 +76,9 @@ open class LookupStorage(private val targetDataDir: File) : BasicMapsOwner() {
         for ((lookupSymbol, paths) in lookups) {
             val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
             val fileIds = paths.mapTo(HashSet<Int>()) { pathToId[it]!! }
-            fileIds.addAll(lookupMap[key] ?: emptySet())
-            lookupMap[key] = fileIds
+            // ids are appended without reading the stored value: recompiled files get new ids anyway,
+            // and a repeated id is dropped when the value is read and when garbage is removed
+            lookupMap.append(key, fileIds)
         }
     }
 
@@ -138,10 +140,8 @@ open class LookupStorage(private val targetDataDir: File) : BasicMapsOwner() {
     }
 
     private fun doRemoveGarbage() {
-        for (hash in lookupMap.keys) {
-            lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toSet()
-        }
-
+        // ids of removed files are not in fileToId anymore, so they are dropped from lookups by the remapping below,
+        // and every lookup is rewritten once without repeated ids
         val oldFileToId = fileToId.toMap()
         val oldIdToNewId = HashMap<Int, Int>(oldFileToId.size)
         idToFile.clean()
@@ -149,13 +149,14 @@ open class LookupStorage(private val targetDataDir: File) : BasicMapsOwner() {
         size = 0
         deletedCount = 0
 
-        for ((file, oldId) in oldFileToId.entries) {
+        // new ids keep the order of old ones, which keeps the stored deltas small
+        for ((file, oldId) in oldFileToId.entries.sortedBy { it.value }) {
             val newId = addFileIfNeeded(file)
             oldIdToNewId[oldId] = newId
         }
 
         for (lookup in lookupMap.keys) {
-            val fileIds = lookupMap[lookup]!!.mapNotNull { oldIdToNewId[it] }.toSet()
+            val fileIds = lookupMap[lookup]!!.mapNotNullTo(HashSet<Int>()) { oldIdToNewId[it] }
 
             if (fileIds.isEmpty()) {
                 lookupMap.remove(lookup)
@@ -196,21 +197,75 @@ open class LookupStorage(private val targetDataDir: File) : BasicMapsOwner() {
     }
 }
 
+// Files and symbols get int ids when they are recorded first, and each (file, symbol) pair is kept once as a long,
+// so repeated lookups of a symbol from the same file do not allocate
 class LookupTrackerImpl(private val delegate: LookupTracker) : LookupTracker {
-    val lookups = MultiMap<LookupSymbol, String>()
-    val pathInterner = StringInterner()
+    private val fileIds = HashMap<String, Int>()
+    private val files = ArrayList<String>()
+
+    // scope -> name -> id of the symbol
+    private val symbolIds = HashMap<String, HashMap<String, Int>>()
+    private val symbols = ArrayList<LookupSymbol>()
+
+    private val recorded = TLongHashSet()
+
     private val interner = StringInterner()
 
+    // built from the recorded pairs on first access and kept until a new lookup is recorded
+    private var lookupsCache: MultiMap<LookupSymbol, String>? = null
+
+    val lookups: MultiMap<LookupSymbol, String>
+        get() {
+            lookupsCache?.let { return it }
+
+            val result = MultiMap.createSet<LookupSymbol, String>()
+            recorded.forEach { fileAndSymbol ->
+                result.putValue(symbols[fileAndSymbol.toInt()], files[(fileAndSymbol ushr 32).toInt()])
+                true
+            }
+            lookupsCache = result
+            return result
+        }
+
+    val paths: Set<String>
+        get() = fileIds.keys
+
     override val requiresPosition: Boolean
         get() = delegate.requiresPosition
 
     override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
-        val internedScopeFqName = interner.intern(scopeFqName)
-        val internedName = interner.intern(name)
-        val internedFilePath = pathInterner.intern(filePath)
+        val fileId = fileIds[filePath] ?: addFile(filePath)
+        val names = symbolIds[scopeFqName] ?: addScope(scopeFqName)
+        val symbolId = names[name] ?: addSymbol(names, scopeFqName, name)
 
-        lookups.putValue(LookupSymbol(internedName, internedScopeFqName), internedFilePath)
-        delegate.record(internedFilePath, position, internedScopeFqName, scopeKind, internedName)
+        if (recorded.add((fileId.toLong() shl 32) or symbolId.toLong())) {
+            lookupsCache = null
+        }
+
+        // the delegate gets the strings stored here, as it got interned strings before
+        val symbol = symbols[symbolId]
+        delegate.record(files[fileId], position, symbol.scope, scopeKind, symbol.name)
+    }
+
+    private fun addFile(filePath: String): Int {
+        val id = files.size
+        files.add(filePath)
+        fileIds[filePath] = id
+        return id
+    }
+
+    private fun addScope(scopeFqName: String): HashMap<String, Int> {
+        val names = HashMap<String, Int>()
+        symbolIds[interner.intern(scopeFqName)] = names
+        return names
+    }
+
+    private fun addSymbol(names: MutableMap<String, Int>, scopeFqName: String, name: String): Int {
+        val id = symbols.size
+        val symbol = LookupSymbol(interner.intern(name), interner.intern(scopeFqName))
+        symbols.add(symbol)
+        names[symbol.name] = id
+        return id
     }
 }
 
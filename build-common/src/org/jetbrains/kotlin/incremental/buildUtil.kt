@@ -39,6 +39,12 @@ import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import org.jetbrains.kotlin.utils.keysToMap
 import java.io.File
 import java.util.*
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 
 fun Iterable<File>.javaSourceRoots(roots: Iterable<File>): Iterable<File> =
@@ -120,6 +126,8 @@ fun<Target> updateIncrementalCaches(
         getIncrementalCache: (Target) -> IncrementalCacheImpl<Target>
 ): CompilationResult {
 
+    readBytecodeInfoInParallel(generatedFiles)
+
     var changesInfo = CompilationResult.NO_CHANGES
     for (generatedFile in generatedFiles) {
         val ic = getIncrementalCache(generatedFile.target)
@@ -139,6 +147,59 @@ fun<Target> updateIncrementalCaches(
     return changesInfo
 }
 
+private val MIN_CLASSES_PER_THREAD = 50
+
+private val BYTECODE_READER_THREADS = Runtime.getRuntime().availableProcessors()
+
+// Shared between all cache updates of the process, idle workers are stopped
+private val bytecodeReaderExecutor by lazy {
+    val threadFactory = object : ThreadFactory {
+        private val counter = AtomicInteger()
+
+        override fun newThread(r: Runnable): Thread {
+            val thread = Thread(r, "Kotlin bytecode reader " + counter.incrementAndGet())
+            thread.isDaemon = true
+            return thread
+        }
+    }
+    val executor = ThreadPoolExecutor(BYTECODE_READER_THREADS, BYTECODE_READER_THREADS, 60L, TimeUnit.SECONDS,
+                                      LinkedBlockingQueue<Runnable>(), threadFactory)
+    executor.allowCoreThreadTimeOut(true)
+    executor
+}
+
+// Reads bytecode of generated classes on several threads before caches are updated with them one by one.
+// An exception is ignored here, so that it is reported when the cache is updated with the class
+fun <Target> readBytecodeInfoInParallel(generatedFiles: List<GeneratedFile<Target>>) {
+    val classes = generatedFiles.filterIsInstance<GeneratedJvmClass<Target>>()
+    val threads = Math.min(BYTECODE_READER_THREADS, classes.size / MIN_CLASSES_PER_THREAD)
+    if (threads < 2) return
+
+    val chunkSize = (classes.size + threads - 1) / threads
+    val futures = (0..classes.size - 1 step chunkSize).map { start ->
+        val chunk = classes.subList(start, Math.min(start + chunkSize, classes.size))
+        bytecodeReaderExecutor.submit(Runnable {
+            for (generatedClass in chunk) {
+                try {
+                    generatedClass.bytecodeInfo
+                }
+                catch (e: Exception) {
+                }
+            }
+        })
+    }
+
+    for (future in futures) {
+        try {
+            future.get()
+        }
+        catch (e: ExecutionException) {
+            // only errors are left uncaught by the task
+            throw e.cause ?: e
+        }
+    }
+}
+
 fun LookupStorage.update(
         lookupTracker: LookupTracker,
         filesToCompile: Iterable<File>,
@@ -148,7 +209,7 @@ fun LookupStorage.update(
 
     removeLookupsFrom(filesToCompile.asSequence() + removedFiles.asSequence())
 
-    addAll(lookupTracker.lookups.entrySet(), lookupTracker.pathInterner.values)
+    addAll(lookupTracker.lookups.entrySet(), lookupTracker.paths)
 }
 
 fun<Target> OutputItemsCollectorImpl.generatedFiles(
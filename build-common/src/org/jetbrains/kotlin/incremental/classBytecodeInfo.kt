@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import org.jetbrains.kotlin.inline.inlineFunctionsJvmNames
+import org.jetbrains.org.objectweb.asm.*
+import java.util.*
+
+// Constants and hashes of inline functions of a class are read from its bytecode in a single pass
+class ClassBytecodeInfo(
+        val constants: Map<String, Any>?,
+        val inlineFunctionHashes: Map<String, Long>
+)
+
+fun readClassBytecodeInfo(kotlinClass: LocalFileKotlinClass): ClassBytecodeInfo {
+    val constants = HashMap<String, Any>()
+    val inlineFunctionHashes = HashMap<String, Long>()
+
+    // the header is already read by LocalFileKotlinClass
+    val inlineFunctions = inlineFunctionsJvmNames(kotlinClass.classHeader)
+
+    ClassReader(kotlinClass.fileContents).accept(object : ClassVisitor(Opcodes.ASM5) {
+        override fun visitField(access: Int, name: String, desc: String, signature: String?, value: Any?): FieldVisitor? {
+            val staticFinal = Opcodes.ACC_STATIC or Opcodes.ACC_FINAL or Opcodes.ACC_PRIVATE
+            if (value != null && access and staticFinal == Opcodes.ACC_STATIC or Opcodes.ACC_FINAL) {
+                constants[name] = value
+            }
+            return null
+        }
+
+        override fun visitMethod(access: Int, name: String, desc: String, signature: String?, exceptions: Array<out String>?): MethodVisitor? {
+            val jvmName = name + desc
+            // code of other methods is not read
+            if (jvmName !in inlineFunctions) return null
+
+            val dummyClassWriter = ClassWriter(Opcodes.ASM5)
+
+            return object : MethodVisitor(Opcodes.ASM5, dummyClassWriter.visitMethod(0, name, desc, null, exceptions)) {
+                override fun visitEnd() {
+                    val dummyBytes = dummyClassWriter.toByteArray()!!
+                    inlineFunctionHashes[jvmName] = dummyBytes.md5()
+                }
+            }
+        }
+    }, if (inlineFunctions.isEmpty()) ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES else 0)
+
+    return ClassBytecodeInfo(if (constants.isEmpty()) null else constants, inlineFunctionHashes)
+}
@@ -20,13 +20,15 @@ import com.intellij.util.io.DataExternalizer
 import com.intellij.util.io.IOUtil
 import com.intellij.util.io.KeyDescriptor
 import com.intellij.util.io.PersistentHashMap
-import java.io.DataOutput
-import java.io.File
-import java.io.IOException
+import gnu.trove.THashMap
+import gnu.trove.TObjectHashingStrategy
+import java.io.*
 
 
 /**
- * It's lazy in a sense that PersistentHashMap is created only on write
+ * It's lazy in a sense that PersistentHashMap is created only on write.
+ * Writes, including appends, are kept in memory until the storage is flushed or closed, so they are written in one batch,
+ * and a build interrupted before that does not leave a partially updated map on disk
  */
 class LazyStorage<K, V>(
         private val storageFile: File,
@@ -36,6 +38,15 @@ class LazyStorage<K, V>(
     @Volatile
     private var storage: PersistentHashMap<K, V>? = null
 
+    // Values that are not written to the storage yet, REMOVED marks removed keys,
+    // PendingAppend holds data appended to the stored value of the key or to the pending value it replaced.
+    // Keys are compared by the key descriptor, as they are in the storage
+    private val pendingWrites = THashMap<K, Any>(object : TObjectHashingStrategy<K> {
+        override fun computeHashCode(key: K): Int = keyDescriptor.getHashCode(key)
+
+        override fun equals(key1: K, key2: K): Boolean = keyDescriptor.isEqual(key1, key2)
+    })
+
     @Synchronized
     private fun getStorageIfExists(): PersistentHashMap<K, V>? {
         if (storage != null) return storage
@@ -58,20 +69,47 @@ class LazyStorage<K, V>(
     }
 
     val keys: Collection<K>
-        get() = getStorageIfExists()?.allKeysWithExistingMapping ?: listOf()
+        @Synchronized get() {
+            val storedKeys = getStorageIfExists()?.allKeysWithExistingMapping ?: listOf()
+            if (pendingWrites.isEmpty()) return storedKeys
+
+            val result = storedKeys.filterTo(ArrayList<K>()) { !pendingWrites.containsKey(it) }
+            for ((key, value) in pendingWrites) {
+                if (value !== REMOVED) {
+                    result.add(key)
+                }
+            }
+            return result
+        }
 
-    operator fun contains(key: K): Boolean =
-            getStorageIfExists()?.containsMapping(key) ?: false
+    @Synchronized
+    operator fun contains(key: K): Boolean {
+        val pending = pendingWrites[key]
+        if (pending != null) return pending !== REMOVED
+
+        return getStorageIfExists()?.containsMapping(key) ?: false
+    }
 
-    operator fun get(key: K): V? =
-            getStorageIfExists()?.get(key)
+    @Suppress("UNCHECKED_CAST")
+    @Synchronized
+    operator fun get(key: K): V? {
+        val pending = pendingWrites[key]
+        return when (pending) {
+            null -> getStorageIfExists()?.get(key)
+            REMOVED -> null
+            is PendingAppend -> appendTo(getBaseValue(key, pending), pending.data.toByteArray())
+            else -> pending as V
+        }
+    }
 
+    @Synchronized
     operator fun set(key: K, value: V) {
-        getStorageOrCreateNew().put(key, value)
+        pendingWrites[key] = value
     }
 
+    @Synchronized
     fun remove(key: K) {
-        getStorageIfExists()?.remove(key)
+        pendingWrites[key] = REMOVED
     }
 
     fun append(key: K, value: String) {
@@ -84,6 +122,8 @@ class LazyStorage<K, V>(
 
     @Synchronized
     fun clean() {
+        pendingWrites.clear()
+
         try {
             storage?.close()
         }
@@ -96,6 +136,8 @@ class LazyStorage<K, V>(
 
     @Synchronized
     fun flush(memoryCachesOnly: Boolean) {
+        writePending()
+
         val existingStorage = storage ?: return
 
         if (memoryCachesOnly) {
@@ -110,13 +152,71 @@ class LazyStorage<K, V>(
 
     @Synchronized
     fun close() {
+        writePending()
         storage?.close()
     }
 
     private fun createMap(): PersistentHashMap<K, V> =
             PersistentHashMap(storageFile, keyDescriptor, valueExternalizer)
 
-    private fun append(key: K, append: (DataOutput)->Unit) {
-        getStorageOrCreateNew().appendData(key, append)
+    @Synchronized
+    fun append(key: K, append: (DataOutput)->Unit) {
+        val pending = pendingWrites[key]
+        val pendingAppend = pending as? PendingAppend ?: PendingAppend(pending).apply { pendingWrites[key] = this }
+        append.invoke(pendingAppend.output)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun getBaseValue(key: K, pendingAppend: PendingAppend): V? =
+            when (pendingAppend.base) {
+                null -> getStorageIfExists()?.get(key)
+                REMOVED -> null
+                else -> pendingAppend.base as V
+            }
+
+    // Appended data is the serialized form of a value's tail, so the result is read back from the concatenated bytes
+    private fun appendTo(value: V?, data: ByteArray): V {
+        val bytes = ByteArrayOutputStream()
+        if (value != null) {
+            DataOutputStream(bytes).use { valueExternalizer.save(it, value) }
+        }
+        bytes.write(data)
+        return DataInputStream(ByteArrayInputStream(bytes.toByteArray())).use { valueExternalizer.read(it) }
+    }
+
+    private fun writePending() {
+        if (pendingWrites.isEmpty()) return
+
+        for ((key, value) in pendingWrites) {
+            writePending(key, value)
+        }
+        pendingWrites.clear()
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun writePending(key: K, value: Any) {
+        when (value) {
+            REMOVED -> getStorageIfExists()?.remove(key)
+            is PendingAppend ->
+                if (value.base == null) {
+                    getStorageOrCreateNew().appendData(key) { out -> out.write(value.data.toByteArray()) }
+                }
+                else {
+                    getStorageOrCreateNew().put(key, appendTo(getBaseValue(key, value), value.data.toByteArray()))
+                }
+            else -> getStorageOrCreateNew().put(key, value as V)
+        }
+    }
+
+    // Data is appended to a growable buffer and merged with the value once it's read or written.
+    // The base is null if data is appended to the stored value, REMOVED if there's no value to append to
+    // (appending to a missing value creates it from the appended data only, as the storage does), or the pending value otherwise
+    private class PendingAppend(val base: Any?) {
+        val data = ByteArrayOutputStream()
+        val output = DataOutputStream(data)
+    }
+
+    private companion object {
+        val REMOVED = Any()
     }
 }
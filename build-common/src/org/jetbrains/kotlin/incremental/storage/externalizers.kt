@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.incremental.storage
 
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil
 import com.intellij.util.io.EnumeratorStringDescriptor
 import com.intellij.util.io.IOUtil
 import com.intellij.util.io.KeyDescriptor
@@ -214,3 +215,35 @@ open class CollectionExternalizer<T>(
 object StringCollectionExternalizer : CollectionExternalizer<String>(EnumeratorStringDescriptor(), { HashSet() })
 
 object IntCollectionExternalizer : CollectionExternalizer<Int>(IntExternalizer, { HashSet() })
+
+// Stores ids of files as chunks of sorted delta-encoded variable length ints, each chunk prefixed with its size.
+// Chunks are written by appending to a value, so ids may repeat across chunks
+object LookupFileIdsExternalizer : DataExternalizer<Collection<Int>> {
+    override fun read(input: DataInput): Collection<Int> {
+        val result = HashSet<Int>()
+        val stream = input as DataInputStream
+
+        while (stream.available() > 0) {
+            val size = DataInputOutputUtil.readINT(stream)
+            var id = 0
+            repeat(size) {
+                id += DataInputOutputUtil.readINT(stream)
+                result.add(id)
+            }
+        }
+
+        return result
+    }
+
+    override fun save(output: DataOutput, value: Collection<Int>) {
+        val ids = value.toIntArray()
+        Arrays.sort(ids)
+
+        DataInputOutputUtil.writeINT(output, ids.size)
+        var previous = 0
+        for (id in ids) {
+            DataInputOutputUtil.writeINT(output, id - previous)
+            previous = id
+        }
+    }
+}
@@ -59,6 +59,8 @@ public class ClassFileFactory implements OutputFileCollection {
     private final Set<File> packagePartSourceFiles = new HashSet<File>();
     private final Map<String, PackageParts> partsGroupedByPackage = new LinkedHashMap<String, PackageParts>();
 
+    private final ThreadLocal<IsolatedOutput> isolatedOutput = new ThreadLocal<IsolatedOutput>();
+
     public ClassFileFactory(@NotNull GenerationState state, @NotNull ClassBuilderFactory builderFactory) {
         this.state = state;
         this.builderFactory = builderFactory;
@@ -79,12 +81,48 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull Collection<? extends PsiFile> sourceFiles) {
         String outputFilePath = asmType.getInternalName() + ".class";
         List<File> ioSourceFiles = toIoFilesIgnoringNonPhysical(sourceFiles);
-        state.getProgress().reportOutput(ioSourceFiles, new File(outputFilePath));
+        synchronized (this) {
+            state.getProgress().reportOutput(ioSourceFiles, new File(outputFilePath));
+        }
         ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, ioSourceFiles));
+
+        IsolatedOutput isolated = isolatedOutput.get();
+        if (isolated != null) {
+            isolated.generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, ioSourceFiles));
+        }
+        else {
+            synchronized (this) {
+                generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, ioSourceFiles));
+            }
+        }
         return answer;
     }
 
+    /**
+     * Runs the given generation so that the classes it creates on the current thread are collected separately and are not added
+     * to the output until {@link #commitIsolatedOutput(IsolatedOutput)} is called. This allows to generate independent parts
+     * concurrently and then commit them in the same order as the sequential generation would produce them.
+     */
+    @NotNull
+    public IsolatedOutput generateIsolated(@NotNull Runnable generation) {
+        assert isolatedOutput.get() == null : "Isolated generation cannot be nested";
+        IsolatedOutput output = new IsolatedOutput();
+        isolatedOutput.set(output);
+        try {
+            generation.run();
+        }
+        finally {
+            isolatedOutput.remove();
+        }
+        return output;
+    }
+
+    public synchronized void commitIsolatedOutput(@NotNull IsolatedOutput output) {
+        assert !isDone : "Already done!";
+        generators.putAll(output.generators);
+        output.generators.clear();
+    }
+
     void done() {
         if (!isDone) {
             isDone = true;
@@ -209,17 +247,19 @@ public class ClassFileFactory implements OutputFileCollection {
         return new PackagePartRegistry() {
             @Override
             public void addPart(@NotNull String partShortName) {
-                MapsKt.getOrPut(partsGroupedByPackage, packageFqNameAsString, new Function0<PackageParts>() {
-                    @Override
-                    public PackageParts invoke() {
-                        return new PackageParts(packageFqNameAsString);
-                    }
-                }).getParts().add(partShortName);
+                synchronized (ClassFileFactory.this) {
+                    MapsKt.getOrPut(partsGroupedByPackage, packageFqNameAsString, new Function0<PackageParts>() {
+                        @Override
+                        public PackageParts invoke() {
+                            return new PackageParts(packageFqNameAsString);
+                        }
+                    }).getParts().add(partShortName);
+                }
             }
         };
     }
 
-    public void registerPackagePartSourceFiles(Collection<KtFile> files) {
+    public synchronized void registerPackagePartSourceFiles(Collection<KtFile> files) {
         packagePartSourceFiles.addAll(toIoFilesIgnoringNonPhysical(PackagePartClassUtils.getFilesWithCallables(files)));
     }
 
@@ -290,6 +330,13 @@ public class ClassFileFactory implements OutputFileCollection {
         }
     }
 
+    public static final class IsolatedOutput {
+        private final Map<String, OutAndSourceFileList> generators = new LinkedHashMap<String, OutAndSourceFileList>();
+
+        private IsolatedOutput() {
+        }
+    }
+
     private static final class ClassBuilderAndSourceFileList extends OutAndSourceFileList {
         private final ClassBuilder classBuilder;
 
@@ -25,7 +25,13 @@ import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall
 
 class InlineCycleReporter(val diagnostics: DiagnosticSink) {
 
-    val processingFunctions = linkedMapOf<PsiElement, CallableDescriptor>()
+    // Inlining stack is tracked per thread, since independent parts may be generated concurrently
+    private val processingFunctionsForThread = object : ThreadLocal<LinkedHashMap<PsiElement, CallableDescriptor>>() {
+        override fun initialValue() = linkedMapOf<PsiElement, CallableDescriptor>()
+    }
+
+    val processingFunctions: LinkedHashMap<PsiElement, CallableDescriptor>
+        get() = processingFunctionsForThread.get()
 
     fun enterIntoInlining(call: ResolvedCall<*>?): Boolean {
         //null call for default method inlining
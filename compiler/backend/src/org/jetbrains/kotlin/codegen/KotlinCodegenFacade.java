@@ -25,9 +25,9 @@ import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus;
 import org.jetbrains.kotlin.psi.KtFile;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class KotlinCodegenFacade {
 
@@ -46,8 +46,8 @@ public class KotlinCodegenFacade {
 
     public static void doGenerateFiles(
             @NotNull Collection<KtFile> files,
-            @NotNull GenerationState state,
-            @NotNull CompilationErrorHandler errorHandler
+            @NotNull final GenerationState state,
+            @NotNull final CompilationErrorHandler errorHandler
     ) {
         MultiMap<FqName, KtFile> filesInPackages = new MultiMap<FqName, KtFile>();
         MultiMap<FqName, KtFile> filesInMultifileClasses = new MultiMap<FqName, KtFile>();
@@ -66,21 +66,114 @@ public class KotlinCodegenFacade {
         }
 
         Set<FqName> obsoleteMultifileClasses = new HashSet<FqName>(state.getObsoleteMultifileClasses());
-        for (FqName multifileClassFqName : Sets.union(filesInMultifileClasses.keySet(), obsoleteMultifileClasses)) {
-            doCheckCancelled(state);
-            generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler);
+        Set<FqName> packagesWithObsoleteParts = new HashSet<FqName>(state.getPackagesWithObsoleteParts());
+
+        if (state.isParallelCodegenEnabled()) {
+            List<Runnable> tasks = new ArrayList<Runnable>();
+            for (final FqName multifileClassFqName : Sets.union(filesInMultifileClasses.keySet(), obsoleteMultifileClasses)) {
+                final Collection<KtFile> filesInClass = filesInMultifileClasses.get(multifileClassFqName);
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        doCheckCancelled(state);
+                        generateMultifileClass(state, multifileClassFqName, filesInClass, errorHandler);
+                    }
+                });
+            }
+            for (final FqName packageFqName : Sets.union(packagesWithObsoleteParts, filesInPackages.keySet())) {
+                final Collection<KtFile> filesInPackage = filesInPackages.get(packageFqName);
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        doCheckCancelled(state);
+                        generatePackage(state, packageFqName, filesInPackage, errorHandler);
+                    }
+                });
+            }
+            generateInParallel(state, tasks);
         }
+        else {
+            for (FqName multifileClassFqName : Sets.union(filesInMultifileClasses.keySet(), obsoleteMultifileClasses)) {
+                doCheckCancelled(state);
+                generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler);
+            }
 
-        Set<FqName> packagesWithObsoleteParts = new HashSet<FqName>(state.getPackagesWithObsoleteParts());
-        for (FqName packageFqName : Sets.union(packagesWithObsoleteParts, filesInPackages.keySet())) {
-            doCheckCancelled(state);
-            generatePackage(state, packageFqName, filesInPackages.get(packageFqName), errorHandler);
+            for (FqName packageFqName : Sets.union(packagesWithObsoleteParts, filesInPackages.keySet())) {
+                doCheckCancelled(state);
+                generatePackage(state, packageFqName, filesInPackages.get(packageFqName), errorHandler);
+            }
         }
 
         doCheckCancelled(state);
         state.getFactory().done();
     }
 
+    // Each task is generated into its own isolated output, which are then committed to the factory in the order of the tasks,
+    // so the resulting output is the same as if the tasks were run sequentially
+    private static void generateInParallel(@NotNull GenerationState state, @NotNull List<Runnable> tasks) {
+        final ClassFileFactory factory = state.getFactory();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(state.getCodegenThreads(), tasks.size()), CODEGEN_THREAD_FACTORY);
+        try {
+            List<Future<ClassFileFactory.IsolatedOutput>> outputs = new ArrayList<Future<ClassFileFactory.IsolatedOutput>>(tasks.size());
+            for (final Runnable task : tasks) {
+                outputs.add(executor.submit(new Callable<ClassFileFactory.IsolatedOutput>() {
+                    @Override
+                    public ClassFileFactory.IsolatedOutput call() {
+                        return factory.generateIsolated(task);
+                    }
+                }));
+            }
+
+            for (Future<ClassFileFactory.IsolatedOutput> output : outputs) {
+                factory.commitIsolatedOutput(getGenerationResult(output));
+            }
+        }
+        finally {
+            // Codegen doesn't check for interruption, so the running tasks are waited for before the state is used any further
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(@NotNull ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Keep waiting
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @NotNull
+    private static <T> T getGenerationResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static final ThreadFactory CODEGEN_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Kotlin codegen worker " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
     private static void doCheckCancelled(GenerationState state) {
         if (state.getClassBuilderMode() == ClassBuilderMode.FULL) {
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled();
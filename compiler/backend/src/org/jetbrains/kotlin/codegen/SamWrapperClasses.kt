@@ -29,8 +29,10 @@ class SamWrapperClasses(private val state: GenerationState) {
 
     fun getSamWrapperClass(samType: SamType, file: KtFile, expressionCodegen: ExpressionCodegen): Type {
         val isInsideInline = InlineUtil.isInlineOrContainingInline(expressionCodegen.context.contextDescriptor)
-        return samInterfaceToWrapperClass.getOrPut(WrapperKey(samType, file, isInsideInline)) {
-            SamWrapperCodegen(state, samType, expressionCodegen.parentCodegen, isInsideInline).genWrapper(file)
+        return synchronized(samInterfaceToWrapperClass) {
+            samInterfaceToWrapperClass.getOrPut(WrapperKey(samType, file, isInsideInline)) {
+                SamWrapperCodegen(state, samType, expressionCodegen.parentCodegen, isInsideInline).genWrapper(file)
+            }
         }
     }
 }
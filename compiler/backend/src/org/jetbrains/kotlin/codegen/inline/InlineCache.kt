@@ -23,16 +23,18 @@ import org.jetbrains.org.objectweb.asm.commons.Method
 
 data class MethodId(val containingFqName: FqName, val method: Method)
 
-class InlineCache {
+class InlineCache(val sharedCache: SharedInlineCache? = null) {
     val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
     val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
 }
 
+// SLRUMap reorders its entries even on read, so every access is synchronized to support the parallel codegen mode.
+// The value is computed outside of the lock, so it may be computed more than once by concurrent threads
 inline fun <K, V> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
-    val value = get(key)
+    val value = synchronized(this) { get(key) }
     return if (value == null) {
         val answer = defaultValue()
-        put(key, answer)
+        synchronized(this) { put(key, answer) }
         answer
     } else {
         value
@@ -214,7 +214,10 @@ public class InlineCodegen extends CallGenerator {
                             }
                         });
 
-        return resultInCache.copyWithNewNode(cloneMethodNode(resultInCache.getNode()));
+        // Cloning resets labels of the cached node, so concurrent clones of the same node must not interleave
+        synchronized (resultInCache) {
+            return resultInCache.copyWithNewNode(cloneMethodNode(resultInCache.getNode()));
+        }
     }
 
     @NotNull
@@ -266,6 +269,24 @@ public class InlineCodegen extends CallGenerator {
 
         final ClassId containerId = containingClasses.getImplClassId();
 
+        SharedInlineCache sharedCache = state.getInlineCache().getSharedCache();
+        if (sharedCache != null) {
+            VirtualFile file = InlineCodegenUtil.findVirtualFile(state, containerId);
+            if (file == null) {
+                throw new IllegalStateException("Couldn't find declaration file for " + containerId);
+            }
+            try {
+                nodeAndSMAP = sharedCache.getMethodNode(file, asmMethod, containerId);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (nodeAndSMAP == null) {
+                throw new IllegalStateException("Couldn't obtain compiled function body for " + descriptorName(functionDescriptor));
+            }
+            return nodeAndSMAP;
+        }
+
         byte[] bytes = InlineCacheKt.getOrPut(state.getInlineCache().getClassBytes(), containerId, new Function0<byte[]>() {
             @Override
             public byte[] invoke() {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.codegen.inline
+
+import com.intellij.openapi.vfs.VirtualFile
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.org.objectweb.asm.commons.Method
+import java.io.File
+import java.io.IOException
+import java.util.*
+
+/**
+ * Cache of compiled inline functions which can be shared between several [InlineCache]s, e.g. between modules of one build
+ * or between compilations in the compile daemon.
+ *
+ * Entries are keyed by the path of the class file and the modification stamp of the jar (or the class file itself) it was loaded from,
+ * so a rebuilt library is never served from the cache. The cache is bounded by the approximate number of bytes held
+ * and evicts the least recently used entries first.
+ */
+class SharedInlineCache(val maxSizeInBytes: Long) {
+    private data class ClassFileKey(val path: String, val stamp: Long, val length: Long)
+
+    private data class MethodNodeKey(val classFile: ClassFileKey, val method: Method)
+
+    private class Entry(val value: Any, val size: Long)
+
+    class Statistics(val hits: Long, val misses: Long, val evictions: Long, val bytesHeld: Long) {
+        override fun toString() = "$hits hits, $misses misses, $evictions evictions, $bytesHeld bytes held"
+    }
+
+    private val entries = LinkedHashMap<Any, Entry>(16, 0.75f, /* accessOrder = */ true)
+
+    private var bytesHeld = 0L
+    private var hits = 0L
+    private var misses = 0L
+    private var evictions = 0L
+
+    val statistics: Statistics
+        get() = synchronized(this) { Statistics(hits, misses, evictions, bytesHeld) }
+
+    @Throws(IOException::class)
+    fun getClassBytes(file: VirtualFile): ByteArray {
+        val key = file.toClassFileKey()
+        (get(key) as ByteArray?)?.let { return it }
+
+        val bytes = file.contentsToByteArray()
+        put(key, bytes, bytes.size.toLong())
+        return bytes
+    }
+
+    @Throws(IOException::class)
+    fun getMethodNode(file: VirtualFile, method: Method, classId: ClassId): SMAPAndMethodNode? {
+        val key = MethodNodeKey(file.toClassFileKey(), method)
+        (get(key) as SMAPAndMethodNode?)?.let { return it }
+
+        val node = InlineCodegenUtil.getMethodNode(getClassBytes(file), method.name, method.descriptor, classId) ?: return null
+        put(key, node, node.approximateSize())
+        return node
+    }
+
+    @Synchronized
+    private fun get(key: Any): Any? {
+        val entry = entries[key]
+        if (entry != null) hits++ else misses++
+        return entry?.value
+    }
+
+    @Synchronized
+    private fun put(key: Any, value: Any, size: Long) {
+        if (size > maxSizeInBytes) return
+
+        entries.put(key, Entry(value, size))?.let { bytesHeld -= it.size }
+        bytesHeld += size
+
+        val iterator = entries.values.iterator()
+        while (bytesHeld > maxSizeInBytes && iterator.hasNext()) {
+            bytesHeld -= iterator.next().size
+            iterator.remove()
+            evictions++
+        }
+    }
+
+    companion object {
+        // Method nodes have no cheap way to compute their real footprint, so it is approximated by the number of instructions
+        private val METHOD_NODE_SIZE = 256L
+        private val INSTRUCTION_SIZE = 48L
+
+        private val JAR_SEPARATOR = "!/"
+
+        private var instance: SharedInlineCache? = null
+
+        @JvmStatic
+        @Synchronized
+        fun getOrCreate(maxSizeInBytes: Long): SharedInlineCache {
+            val current = instance
+            if (current != null && current.maxSizeInBytes == maxSizeInBytes) return current
+
+            val cache = SharedInlineCache(maxSizeInBytes)
+            instance = cache
+            return cache
+        }
+
+        private fun SMAPAndMethodNode.approximateSize(): Long =
+                METHOD_NODE_SIZE + INSTRUCTION_SIZE * node.instructions.size()
+
+        private fun VirtualFile.toClassFileKey(): ClassFileKey {
+            val jarSeparatorIndex = path.indexOf(JAR_SEPARATOR)
+            val stamp = if (jarSeparatorIndex < 0) timeStamp else File(path.substring(0, jarSeparatorIndex)).lastModified()
+            return ClassFileKey(path, stamp, length)
+        }
+    }
+}
@@ -57,12 +57,21 @@ class BuilderFactoryForDuplicateSignatureDiagnostics(
     private val reportDiagnosticsTasks = ArrayList<() -> Unit>()
 
     fun reportDiagnostics() {
-        reportDiagnosticsTasks.forEach { it() }
-        reportDiagnosticsTasks.clear()
+        val tasks = synchronized(reportDiagnosticsTasks) {
+            reportDiagnosticsTasks.toList().apply { reportDiagnosticsTasks.clear() }
+        }
+        tasks.forEach { it() }
+    }
+
+    // Classes may be done concurrently in the parallel codegen mode
+    private fun addReportDiagnosticsTask(task: () -> Unit) {
+        synchronized(reportDiagnosticsTasks) {
+            reportDiagnosticsTasks.add(task)
+        }
     }
 
     override fun handleClashingSignatures(data: ConflictingJvmDeclarationsData) {
-        reportDiagnosticsTasks.add { reportConflictingJvmSignatures(data) }
+        addReportDiagnosticsTask { reportConflictingJvmSignatures(data) }
     }
 
     private fun reportConflictingJvmSignatures(data: ConflictingJvmDeclarationsData) {
@@ -94,7 +103,7 @@ class BuilderFactoryForDuplicateSignatureDiagnostics(
             classInternalName: String,
             signatures: MultiMap<RawSignature, JvmDeclarationOrigin>
     ) {
-        reportDiagnosticsTasks.add { reportClashingSignaturesInHierarchy(classOrigin, classInternalName, signatures) }
+        addReportDiagnosticsTask { reportClashingSignaturesInHierarchy(classOrigin, classInternalName, signatures) }
     }
 
     private fun reportClashingSignaturesInHierarchy(
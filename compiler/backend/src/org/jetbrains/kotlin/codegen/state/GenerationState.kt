@@ -27,10 +27,12 @@ import org.jetbrains.kotlin.codegen.context.CodegenContext
 import org.jetbrains.kotlin.codegen.context.RootContext
 import org.jetbrains.kotlin.codegen.extensions.ClassBuilderInterceptorExtension
 import org.jetbrains.kotlin.codegen.inline.InlineCache
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods
 import org.jetbrains.kotlin.codegen.optimization.OptimizationClassBuilderFactory
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.descriptors.ScriptDescriptor
+import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl
 import org.jetbrains.kotlin.diagnostics.Diagnostic
 import org.jetbrains.kotlin.diagnostics.DiagnosticSink
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
@@ -41,8 +43,11 @@ import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtScript
 import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingTrace
+import org.jetbrains.kotlin.resolve.BindingTraceContext
 import org.jetbrains.kotlin.resolve.DelegatingBindingTrace
 import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics
+import org.jetbrains.kotlin.storage.LockBasedLazyResolveStorageManager
+import org.jetbrains.kotlin.util.slicedMap.ConcurrentSlicedMap
 import java.io.File
 
 class GenerationState @JvmOverloads constructor(
@@ -70,7 +75,12 @@ class GenerationState @JvmOverloads constructor(
         val incrementalCompilationComponents: IncrementalCompilationComponents? = null,
         val progress: Progress = Progress.DEAF,
         private val onIndependentPartCompilationEnd: GenerationStateEventCallback = GenerationStateEventCallback.DO_NOTHING,
-        dumpBinarySignatureMappingTo: File? = null
+        dumpBinarySignatureMappingTo: File? = null,
+        // number of threads used to generate independent packages and multifile classes, see KotlinCodegenFacade
+        val codegenThreads: Int = 1,
+        sharedInlineCache: SharedInlineCache? = null,
+        // true if other generation states read the same binding context on other threads, see KotlinToJVMBytecodeCompiler.compileModules
+        generatedConcurrently: Boolean = false
 ) {
     abstract class GenerateClassFilter {
         abstract fun shouldAnnotateClass(processingClassOrObject: KtClassOrObject): Boolean
@@ -91,15 +101,27 @@ class GenerationState @JvmOverloads constructor(
         }
     }
 
+    val isParallelCodegenEnabled: Boolean = codegenThreads > 1
+
+    // The binding context is read by several threads if either packages of this state or several states are generated in parallel
+    private val isBindingContextShared: Boolean = isParallelCodegenEnabled || generatedConcurrently
+
+    // Codegen threads may trigger lazy resolution, which records to the analysis trace under the lock of the storage manager used
+    // in the analysis. So in parallel mode the results of the analysis are read from a snapshot which takes that lock only for values
+    // recorded after it was created, and the values recorded by codegen are kept in concurrent maps, see createTrace
+    private val analysisContext: BindingContext =
+            if (isBindingContextShared) createAnalysisSnapshot(module, bindingContext) else bindingContext
+
     val fileClassesProvider: CodegenFileClassesProvider = CodegenFileClassesProvider()
-    val inlineCache: InlineCache = InlineCache()
+    val inlineCache: InlineCache = InlineCache(sharedInlineCache)
 
     private fun getIncrementalCacheForThisTarget() =
             if (incrementalCompilationComponents != null && targetId != null)
                 incrementalCompilationComponents.getIncrementalCache(targetId)
             else null
 
-    val extraJvmDiagnosticsTrace: BindingTrace = DelegatingBindingTrace(bindingContext, false, "For extra diagnostics in ${this.javaClass}")
+    val extraJvmDiagnosticsTrace: BindingTrace =
+            createTrace(withParentDiagnostics = false, debugName = "For extra diagnostics in ${this.javaClass}")
     private val interceptedBuilderFactory: ClassBuilderFactory
     private var used = false
 
@@ -111,7 +133,7 @@ class GenerationState @JvmOverloads constructor(
 
     val moduleName: String = moduleName ?: JvmCodegenUtil.getModuleName(module)
     val classBuilderMode: ClassBuilderMode = builderFactory.classBuilderMode
-    val bindingTrace: BindingTrace = DelegatingBindingTrace(bindingContext, "trace in GenerationState")
+    val bindingTrace: BindingTrace = createTrace(withParentDiagnostics = true, debugName = "trace in GenerationState")
     val bindingContext: BindingContext = bindingTrace.bindingContext
     val typeMapper: KotlinTypeMapper = KotlinTypeMapper(
             this.bindingContext, classBuilderMode, fileClassesProvider, getIncrementalCacheForThisTarget(),
@@ -185,6 +207,33 @@ class GenerationState @JvmOverloads constructor(
     fun destroy() {
         interceptedBuilderFactory.close()
     }
+
+    private fun createTrace(withParentDiagnostics: Boolean, debugName: String): BindingTrace =
+            if (isBindingContextShared) ConcurrentDelegatingBindingTrace(analysisContext, withParentDiagnostics, debugName)
+            else DelegatingBindingTrace(analysisContext, withParentDiagnostics, debugName)
+
+    companion object {
+        // Generation states running at the same time may share one snapshot, the snapshot of a snapshot is the snapshot itself
+        @JvmStatic
+        fun createAnalysisSnapshot(module: ModuleDescriptor, bindingContext: BindingContext): BindingContext {
+            val storageManager = (module as? ModuleDescriptorImpl)?.storageManager
+                                 ?: throw IllegalStateException("Parallel code generation needs the storage manager of the analysis: $module")
+            val lockedContext = LockBasedLazyResolveStorageManager(storageManager).createSafeContext(bindingContext)
+            return storageManager.compute { BindingTraceContext.createSnapshot(bindingContext, lockedContext) }
+        }
+    }
+}
+
+// Codegen threads read the values recorded by codegen without locking, diagnostics are reported under the lock of the trace
+private class ConcurrentDelegatingBindingTrace(
+        parentContext: BindingContext,
+        withParentDiagnostics: Boolean,
+        debugName: String
+) : DelegatingBindingTrace(parentContext, withParentDiagnostics, debugName, ConcurrentSlicedMap()) {
+    @Synchronized
+    override fun report(diagnostic: Diagnostic) {
+        super.report(diagnostic)
+    }
 }
 
 private class LazyJvmDiagnostics(compute: () -> Diagnostics): Diagnostics {
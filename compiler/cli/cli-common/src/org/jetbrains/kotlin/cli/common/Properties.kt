@@ -18,6 +18,15 @@ package org.jetbrains.kotlin.cli.common
 
 val KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY = "kotlin.environment.keepalive"
 
+// size in megabytes of the inline functions cache shared between compilations in the same process, the cache is disabled if not set
+val KOTLIN_COMPILER_INLINE_CACHE_SIZE_PROPERTY = "kotlin.inline.cache.size"
+
+// path to the file where packages of classpath jars are stored between compilations, see JvmDependenciesIndexStorage
+val KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY = "kotlin.dependencies.index.path"
+
+// number of dependencies indices kept warm between compilations in the same process, see JvmDependenciesIndexPool
+val KOTLIN_COMPILER_DEPENDENCIES_INDEX_POOL_SIZE_PROPERTY = "kotlin.dependencies.index.pool.size"
+
 
 fun String?.toBooleanLenient(): Boolean? = when (this?.toLowerCase()) {
     null -> false
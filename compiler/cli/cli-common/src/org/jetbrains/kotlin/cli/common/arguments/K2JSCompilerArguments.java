@@ -61,6 +61,10 @@ public class K2JSCompilerArguments extends CommonCompilerArguments {
     @ValueDescription("<path>")
     public String outputPostfix;
 
+    @Argument(value = "Xbuild-stamp", description = "Path to file with inputs of the previous build, used to skip compilation when nothing has changed")
+    @ValueDescription("<path>")
+    public String buildStamp;
+
     @Override
     @NotNull
     public String executableScriptFileName() {
@@ -67,6 +67,18 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "Xmultifile-parts-inherit", description = "Compile multifile classes as a hierarchy of parts and facade")
     public boolean inheritMultifileParts;
 
+    @Argument(value = "Xcodegen-threads", description = "Generate bytecode for independent packages in parallel using the given number of threads")
+    @ValueDescription("<count>")
+    public String codegenThreads;
+
+    @Argument(value = "Xmodule-threads", description = "Generate bytecode for independent modules of a module script in parallel using the given number of threads, modules are still analyzed sequentially")
+    @ValueDescription("<count>")
+    public String moduleThreads;
+
+    @Argument(value = "Xmodule-heap-budget", description = "Do not start generating more modules in parallel while the used heap exceeds the given size")
+    @ValueDescription("<megabytes>")
+    public String moduleHeapBudget;
+
     @Argument(value = "Xallow-kotlin-package", description = "Allow compiling code in package 'kotlin'")
     public boolean allowKotlinPackage;
 
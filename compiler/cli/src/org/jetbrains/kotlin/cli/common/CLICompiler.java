@@ -37,6 +37,7 @@ import org.jetbrains.kotlin.config.Services;
 import org.jetbrains.kotlin.progress.CompilationCanceledException;
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus;
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus;
+import org.jetbrains.kotlin.types.checker.TypeCheckerMemo;
 
 import java.io.PrintStream;
 import java.util.List;
@@ -215,6 +216,7 @@ public abstract class CLICompiler<A extends CommonCompilerArguments> {
                     K2JVMCompiler.Companion.resetInitStartTime();
                 }
                 Disposable rootDisposable = Disposer.newDisposable();
+                TypeCheckerMemo previousTypeCheckerMemo = TypeCheckerMemo.startSession();
                 try {
                     MessageSeverityCollector severityCollector = new MessageSeverityCollector(groupingCollector);
                     ExitCode code = doExecute(arguments, services, severityCollector, rootDisposable);
@@ -236,6 +238,7 @@ public abstract class CLICompiler<A extends CommonCompilerArguments> {
                     }
                 }
                 finally {
+                    TypeCheckerMemo.endSession(previousTypeCheckerMemo);
                     Disposer.dispose(rootDisposable);
                 }
             }
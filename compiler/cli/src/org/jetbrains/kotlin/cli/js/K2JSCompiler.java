@@ -84,7 +84,8 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             @NotNull MessageCollector messageCollector,
             @NotNull Disposable rootDisposable
     ) {
-        final MessageSeverityCollector messageSeverityCollector = new MessageSeverityCollector(messageCollector);
+        JsBuildStamp.WarningRecorder warningRecorder = new JsBuildStamp.WarningRecorder(messageCollector);
+        final MessageSeverityCollector messageSeverityCollector = new MessageSeverityCollector(warningRecorder);
 
         if (arguments.freeArgs.isEmpty()) {
             if (arguments.version) {
@@ -140,6 +141,19 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
             return COMPILATION_ERROR;
         }
 
+        JsBuildStamp buildStamp = null;
+        if (arguments.buildStamp != null) {
+            buildStamp = JsBuildStamp.create(new File(arguments.buildStamp), arguments, sourcesFiles, getLibraryFiles(arguments));
+            if (buildStamp.isUpToDate()) {
+                buildStamp.reportSavedWarnings(messageSeverityCollector);
+                messageSeverityCollector.report(CompilerMessageSeverity.LOGGING,
+                                                "Sources, libraries and options are unchanged, '" + outputFile.getPath() + "' is up-to-date",
+                                                CompilerMessageLocation.NO_LOCATION);
+                return OK;
+            }
+            warningRecorder.startRecording();
+        }
+
         AnalyzerWithCompilerReport analyzerWithCompilerReport = analyzeAndReportErrors(messageSeverityCollector, sourcesFiles, config);
         if (analyzerWithCompilerReport.hasErrors()) {
             return COMPILATION_ERROR;
@@ -209,6 +223,10 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
 
         OutputUtilsKt.writeAll(outputFiles, outputDir, messageSeverityCollector);
 
+        if (buildStamp != null) {
+            buildStamp.save(outputFiles, outputDir, warningRecorder.getWarnings());
+        }
+
         return OK;
     }
 
@@ -254,6 +272,17 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         String moduleId = FileUtil.getNameWithoutExtension(new File(arguments.outputFile));
         boolean inlineEnabled = !arguments.noInline;
 
+        return new LibrarySourcesConfig.Builder(project, moduleId, getLibraryFiles(arguments))
+                .ecmaVersion(ecmaVersion)
+                .sourceMap(arguments.sourceMap)
+                .inlineEnabled(inlineEnabled)
+                .metaInfo(arguments.metaInfo)
+                .kjsm(arguments.kjsm)
+                .build();
+    }
+
+    @NotNull
+    private static List<String> getLibraryFiles(@NotNull K2JSCompilerArguments arguments) {
         List<String> libraryFiles = new SmartList<String>();
         if (!arguments.noStdlib) {
             libraryFiles.add(0, PathUtil.getKotlinPathsForCompiler().getJsStdLibJarPath().getAbsolutePath());
@@ -262,14 +291,7 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         if (arguments.libraryFiles != null) {
             ContainerUtil.addAllNotNull(libraryFiles, arguments.libraryFiles);
         }
-
-        return new LibrarySourcesConfig.Builder(project, moduleId, libraryFiles)
-                .ecmaVersion(ecmaVersion)
-                .sourceMap(arguments.sourceMap)
-                .inlineEnabled(inlineEnabled)
-                .metaInfo(arguments.metaInfo)
-                .kjsm(arguments.kjsm)
-                .build();
+        return libraryFiles;
     }
 
     public static MainCallParameters createMainCallParameters(String main) {
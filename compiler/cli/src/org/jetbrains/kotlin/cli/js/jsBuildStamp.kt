@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.js
+
+import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.cli.common.KotlinVersion
+import org.jetbrains.kotlin.cli.common.arguments.K2JSCompilerArguments
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.psi.KtFile
+import java.io.*
+import java.security.MessageDigest
+import java.util.*
+
+private val INPUTS_DIGEST = "MD5"
+
+/**
+ * Remembers the inputs of the previous compilation of a JS module together with the files written by it,
+ * so that the compilation can be skipped when neither sources, nor libraries, nor options have changed.
+ *
+ * The file consists of the digest of inputs, the path, length and time stamp of each output, and the warnings reported
+ * by the compilation, which are reported again when the compilation is skipped.
+ */
+class JsBuildStamp(private val stampFile: File, private val inputsDigest: String) {
+    private var savedWarnings: List<Warning> = emptyList()
+
+    fun isUpToDate(): Boolean {
+        if (!stampFile.exists()) return false
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(stampFile))).use { input ->
+                if (input.readUTF() != inputsDigest) return false
+
+                for (i in 1..input.readInt()) {
+                    val file = File(input.readUTF())
+                    val length = input.readLong()
+                    val lastModified = input.readLong()
+                    if (!file.isFile || file.length() != length || file.lastModified() != lastModified) return false
+                }
+
+                savedWarnings = (1..input.readInt()).map { Warning.read(input) }
+                return true
+            }
+        }
+        catch (e: IOException) {
+            return false
+        }
+    }
+
+    fun reportSavedWarnings(collector: MessageCollector) {
+        for (warning in savedWarnings) {
+            collector.report(CompilerMessageSeverity.WARNING, warning.message, warning.location)
+        }
+    }
+
+    fun save(outputFiles: OutputFileCollection, outputDir: File, warnings: List<Warning>) {
+        val files = outputFiles.asList().map { File(outputDir, it.relativePath).absoluteFile }
+
+        stampFile.absoluteFile.parentFile?.mkdirs()
+        DataOutputStream(BufferedOutputStream(FileOutputStream(stampFile))).use { output ->
+            output.writeUTF(inputsDigest)
+
+            output.writeInt(files.size)
+            for (file in files) {
+                output.writeUTF(file.path)
+                output.writeLong(file.length())
+                output.writeLong(file.lastModified())
+            }
+
+            output.writeInt(warnings.size)
+            warnings.forEach { it.write(output) }
+        }
+    }
+
+    class Warning(val message: String, val location: CompilerMessageLocation) {
+        fun write(output: DataOutput) {
+            val path = location.path
+            output.writeUTF(message)
+            output.writeBoolean(path != null)
+            if (path != null) {
+                output.writeUTF(path)
+                output.writeInt(location.line)
+                output.writeInt(location.column)
+                output.writeUTF(location.lineContent ?: "")
+            }
+        }
+
+        companion object {
+            fun read(input: DataInput): Warning {
+                val message = input.readUTF()
+                if (!input.readBoolean()) return Warning(message, CompilerMessageLocation.NO_LOCATION)
+
+                val location = CompilerMessageLocation.create(input.readUTF(), input.readInt(), input.readInt(), input.readUTF())
+                return Warning(message, location)
+            }
+        }
+    }
+
+    /**
+     * Passes messages to the delegate and keeps the warnings reported after [startRecording], to be saved in the build stamp
+     */
+    class WarningRecorder(private val delegate: MessageCollector) : MessageCollector {
+        private var recording = false
+
+        val warnings = ArrayList<Warning>()
+
+        fun startRecording() {
+            recording = true
+        }
+
+        override fun report(severity: CompilerMessageSeverity, message: String, location: CompilerMessageLocation) {
+            delegate.report(severity, message, location)
+            if (recording && severity == CompilerMessageSeverity.WARNING) {
+                warnings.add(Warning(message, location))
+            }
+        }
+    }
+
+    companion object {
+        @JvmStatic
+        fun create(
+                stampFile: File,
+                arguments: K2JSCompilerArguments,
+                sources: List<KtFile>,
+                libraries: List<String>
+        ): JsBuildStamp {
+            val md = MessageDigest.getInstance(INPUTS_DIGEST)
+
+            fun update(value: Any?) {
+                md.update(value.toString().toByteArray())
+                md.update(0.toByte())
+            }
+
+            fun updateWithFile(path: String?) {
+                val file = path?.let { File(it) }
+                update(file?.absolutePath)
+                // Directories are walked since their own time stamp does not change when a nested file is edited
+                file?.walkTopDown()?.filter { it.isFile }?.sortedBy { it.path }?.forEach {
+                    update(it.path)
+                    update(it.length())
+                    update(it.lastModified())
+                }
+            }
+
+            update(KotlinVersion.VERSION)
+            with(arguments) {
+                update(File(outputFile).absolutePath)
+                listOf(noStdlib, sourceMap, metaInfo, kjsm, target, main, noInline).forEach { update(it) }
+                updateWithFile(outputPrefix)
+                updateWithFile(outputPostfix)
+
+                update(pluginClasspaths?.size)
+                pluginClasspaths?.forEach { updateWithFile(it) }
+                update(pluginOptions?.size)
+                pluginOptions?.forEach { update(it) }
+            }
+
+            libraries.forEach { updateWithFile(it) }
+
+            // The order of sources is kept, since it affects the order of declarations in the output
+            update(sources.size)
+            for (source in sources) {
+                update(source.virtualFile?.path ?: source.name)
+                update(source.text)
+            }
+
+            return JsBuildStamp(stampFile, md.digest().joinToString("") { String.format("%02x", it) })
+        }
+    }
+}
@@ -38,6 +38,7 @@ import org.jetbrains.kotlin.load.java.JvmAbi
 import org.jetbrains.kotlin.load.kotlin.JvmMetadataVersion
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.script.StandardScriptDefinition
+import org.jetbrains.kotlin.types.checker.TypeCheckerMemo
 import org.jetbrains.kotlin.util.PerformanceCounter
 import org.jetbrains.kotlin.utils.KotlinPaths
 import org.jetbrains.kotlin.utils.KotlinPathsFromHomeDir
@@ -131,6 +132,7 @@ open class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
         }
 
         putAdvancedOptions(configuration, arguments)
+        if (messageSeverityCollector.anyReported(CompilerMessageSeverity.ERROR)) return COMPILATION_ERROR
 
         messageSeverityCollector.report(CompilerMessageSeverity.LOGGING, "Configuring the compilation environment", CompilerMessageLocation.NO_LOCATION)
         try {
@@ -200,6 +202,7 @@ open class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
                 reportGCTime(environment.configuration)
                 reportCompilationTime(environment.configuration)
                 PerformanceCounter.report { s -> reportPerf(environment.configuration, s) }
+                TypeCheckerMemo.current()?.let { reportPerf(environment.configuration, it.report()) }
             }
             return OK
         }
@@ -281,10 +284,36 @@ open class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
             configuration.put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize)
             configuration.put(JVMConfigurationKeys.DECLARATIONS_JSON_PATH, arguments.declarationsOutputPath)
             configuration.put(JVMConfigurationKeys.INHERIT_MULTIFILE_PARTS, arguments.inheritMultifileParts);
+            arguments.codegenThreads?.let { value ->
+                parsePositiveInt(configuration, "-Xcodegen-threads", value)?.let { configuration.put(JVMConfigurationKeys.CODEGEN_THREADS, it) }
+            }
+            arguments.moduleThreads?.let { value ->
+                parsePositiveInt(configuration, "-Xmodule-threads", value)?.let { configuration.put(JVMConfigurationKeys.MODULE_THREADS, it) }
+            }
+            arguments.moduleHeapBudget?.let { value ->
+                parsePositiveInt(configuration, "-Xmodule-heap-budget", value)?.let { configuration.put(JVMConfigurationKeys.MODULE_HEAP_BUDGET, it) }
+            }
             configuration.put(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE, arguments.allowKotlinPackage);
             configuration.put(CLIConfigurationKeys.REPORT_PERF, arguments.reportPerf);
         }
 
+        // Reports an error and returns null unless the value of the option is a positive number
+        private fun parsePositiveInt(configuration: CompilerConfiguration, option: String, value: String): Int? {
+            val result = try {
+                value.toInt()
+            }
+            catch (e: NumberFormatException) {
+                null
+            }
+            if (result == null || result <= 0) {
+                configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)!!.report(
+                        CompilerMessageSeverity.ERROR, "Invalid value of $option: '$value', a positive number is expected",
+                        CompilerMessageLocation.NO_LOCATION)
+                return null
+            }
+            return result
+        }
+
         private fun getClasspath(paths: KotlinPaths, arguments: K2JVMCompilerArguments): List<File> {
             val classpath = arrayListOf<File>()
             if (arguments.classpath != null) {
@@ -198,7 +198,7 @@ class CliLightClassGenerationSupport(project: Project) : LightClassGenerationSup
             val value = super.get(slice, key)
 
             if (value == null) {
-                if (BindingContext.FUNCTION === slice || BindingContext.VARIABLE === slice) {
+                if (mayResolveOnGet(slice)) {
                     if (key is KtDeclaration) {
                         if (!KtPsiUtil.isLocal(key)) {
                             kotlinCodeAnalyzer!!.resolveToDescriptor(key)
@@ -210,6 +210,9 @@ class CliLightClassGenerationSupport(project: Project) : LightClassGenerationSup
 
             return value
         }
+
+        override fun mayResolveOnGet(slice: ReadOnlySlice<*, *>): Boolean =
+                BindingContext.FUNCTION === slice || BindingContext.VARIABLE === slice
     }
 
     override fun getFacadeClassesInPackage(packageFqName: FqName, scope: GlobalSearchScope): Collection<PsiClass> {
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.util.SystemInfo
+import com.intellij.openapi.vfs.impl.ZipHandler
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import java.io.File
+import java.util.*
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Keeps the jars opened by the shared application environment cached between compilations (in a long-running process such as
+ * the daemon), and drops the caches only when some of these jars is changed on disk.
+ *
+ * Compilations using the cache are reference-counted: the cache is never dropped under a running compilation. A compilation
+ * started after a jar has changed waits for the running ones to finish, and then starts with a clean cache.
+ * On Windows, the open jar files are closed whenever no compilation is running, so that they are not locked between builds.
+ *
+ * Jars are tracked only for the compilations which [acquire] the cache, i.e. those run by the daemon. Jars opened by other
+ * compilations in the same process (e.g. in-process builds) are not recorded, so that the stamps don't grow without bound.
+ */
+object JarCacheTracker {
+    private class Stamp(val lastModified: Long, val length: Long)
+
+    private val stamps = HashMap<String, Stamp>()
+    private var users = 0
+
+    private val lock = ReentrantLock()
+    private val noUsers = lock.newCondition()
+
+    @JvmStatic
+    fun jarOpened(jar: File) {
+        lock.withLock {
+            if (users == 0) return
+
+            val path = jar.absolutePath
+            if (path !in stamps) {
+                stamps[path] = Stamp(jar.lastModified(), jar.length())
+            }
+        }
+    }
+
+    @JvmStatic
+    fun acquire() {
+        lock.withLock {
+            if (hasChangedJars()) {
+                while (users > 0) {
+                    noUsers.await()
+                }
+                // the cache may have already been dropped by another compilation while we were waiting
+                if (hasChangedJars()) {
+                    clear()
+                }
+            }
+            users++
+        }
+    }
+
+    @JvmStatic
+    fun release() {
+        lock.withLock {
+            assert(users > 0) { "Unbalanced release of the jar cache" }
+            users--
+            if (users == 0) {
+                if (SystemInfo.isWindows) {
+                    // open files can't be replaced on Windows, so the build would fail to rewrite a jar the daemon keeps open.
+                    // The parsed jar handlers stay cached, and the files are reopened on demand by the next compilation
+                    ZipHandler.clearFileAccessorCache()
+                }
+                noUsers.signalAll()
+            }
+        }
+    }
+
+    @JvmStatic
+    fun clear() {
+        lock.withLock {
+            ZipHandler.clearFileAccessorCache()
+            (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+            JvmDependenciesIndexPool.clearInstance()
+            stamps.clear()
+        }
+    }
+
+    private fun hasChangedJars(): Boolean = stamps.any { entry ->
+        val file = File(entry.key)
+        file.lastModified() != entry.value.lastModified || file.length() != entry.value.length
+    }
+}
@@ -21,6 +21,9 @@ import com.intellij.util.containers.IntArrayList
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
 
 data class JavaRoot(val file: VirtualFile, val type: JavaRoot.RootType, val prefixFqName: FqName? = null) {
     enum class RootType {
@@ -35,44 +38,33 @@ data class JavaRoot(val file: VirtualFile, val type: JavaRoot.RootType, val pref
 }
 
 // speeds up finding files/classes in classpath/java source roots
-// NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-class JvmDependenciesIndex(_roots: List<JavaRoot>) {
+// THREADSAFE: information about a package is computed from the information about its parent package and published via a concurrent map,
+// concurrent threads may compute the same package simultaneously, which is harmless since the result is the same
+class JvmDependenciesIndex(_roots: List<JavaRoot>, private val storage: JvmDependenciesIndexStorage? = null) {
 
-    //these fields are computed based on _roots passed to constructor which are filled in later
-    private val roots: List<JavaRoot> by lazy { _roots.toList() }
+    private val roots: List<JavaRoot> = _roots.toList()
 
-    private val maxIndex: Int
-        get() = roots.size
+    // packages of binary roots known from the storage, looked up when a root is first checked for a package
+    // so that jars which are never reached are not traversed; races are harmless, all threads get the same packages
+    private class StoredPackages(val packages: Set<String>?)
 
-    // each "Cache" object corresponds to a package
-    private class Cache {
-        private val innerPackageCaches = HashMap<String, Cache>()
+    private val storedPackages = AtomicReferenceArray<StoredPackages?>(roots.size)
 
-        operator fun get(name: String) = innerPackageCaches.getOrPut(name) { Cache() }
+    // each "PackageInfo" object corresponds to a package and lists indices of all roots which contain it in ascending order
+    // directories are resolved lazily for roots whose packages are known from the storage, so that such roots are not opened until needed
+    private class PackageInfo(val relativePath: String, val rootIndices: IntArray, val directories: Array<VirtualFile?>)
 
-        // indices of roots that are known to contain this package
-        // if this list contains [1, 3, 5] then roots with indices 1, 3 and 5 are known to contain this package, 2 and 4 are known not to (no information about roots 6 or higher)
-        // if this list contains maxIndex that means that all roots containing this package are known
-        val rootIndices = IntArrayList()
-    }
+    private val packages = ConcurrentHashMap<FqName, PackageInfo>()
 
-    // root "Cache" object corresponds to DefaultPackage which exists in every root. Roots with non-default fqname are also listed here but
-    // they will be ignored on requests with invalid fqname prefix.
-    private val rootCache: Cache by lazy {
-        with(Cache()) {
-            roots.indices.forEach {
-                rootIndices.add(it)
-            }
-            rootIndices.add(maxIndex)
-            rootIndices.trimToSize()
-            this
-        }
-    }
+    private val packagesComputationTime = AtomicLong()
 
-    // holds the request and the result last time we searched for class
+    // total time spent on discovering packages in the roots, i.e. the work saved when this index is reused, see JvmDependenciesIndexPool
+    val packagesComputationNanos: Long get() = packagesComputationTime.get()
+
+    // holds the request and the result last time we searched for class on this thread
     // helps improve several scenarios, LazyJavaResolverContext.findClassInJava being the most important
-    private var lastClassSearch: Pair<FindClassRequest, SearchResult>? = null
+    private val lastClassSearch = ThreadLocal<Pair<FindClassRequest, SearchResult>>()
 
 
     // findClassGivenDirectory MUST check whether the class with this classId exists in given package
@@ -126,15 +118,16 @@ class JvmDependenciesIndex(_roots: List<JavaRoot>) {
         fun doSearch() = doSearch(request, handler)
 
         // make a decision based on information saved from last class search
-        if (request !is FindClassRequest || lastClassSearch == null) {
+        val lastSearch = lastClassSearch.get()
+        if (request !is FindClassRequest || lastSearch == null) {
             return doSearch()
         }
-        
-        val (cachedRequest, cachedResult) = lastClassSearch!!
+
+        val (cachedRequest, cachedResult) = lastSearch
         if (cachedRequest.classId != request.classId) {
             return doSearch()
         }
-        
+
         when (cachedResult) {
             is SearchResult.NotFound -> {
                 val limitedRootTypes = request.acceptedRootTypes.toHashSet()
@@ -161,106 +154,112 @@ class JvmDependenciesIndex(_roots: List<JavaRoot>) {
 
         fun <T : Any> found(packageDirectory: VirtualFile, root: JavaRoot, result: T): T {
             if (findClassRequest != null) {
-                lastClassSearch = Pair(findClassRequest, SearchResult.Found(packageDirectory, root))
+                lastClassSearch.set(Pair(findClassRequest, SearchResult.Found(packageDirectory, root)))
             }
             return result
         }
 
         fun <T : Any> notFound(): T? {
             if (findClassRequest != null) {
-                lastClassSearch = Pair(findClassRequest, SearchResult.NotFound)
+                lastClassSearch.set(Pair(findClassRequest, SearchResult.NotFound))
             }
             return null
         }
 
-        fun handle(root: JavaRoot, targetDirInRoot: VirtualFile): T? {
-            if (root.type in request.acceptedRootTypes) {
-                val (result, shouldContinue) = handler(targetDirInRoot, root.type)
-                if (!shouldContinue) {
-                    return result
-                }
-            }
-            return null
-        }
+        val packageInfo = getPackageInfo(request.packageFqName)
+        for (i in packageInfo.rootIndices.indices) {
+            val root = roots[packageInfo.rootIndices[i]]
+            if (root.type !in request.acceptedRootTypes) continue
 
-        // a list of package sub names, ["org", "jb", "kotlin"]
-        val packagesPath = request.packageFqName.pathSegments().map { it.identifier }
-        // a list of caches corresponding to packages, [default, "org", "org.jb", "org.jb.kotlin"]
-        val caches = cachesPath(packagesPath)
-
-        var processedRootsUpTo = -1
-        // traverse caches starting from last, which contains most specific information
-
-        // NOTE: indices manipulation instead of using caches.indices.reversed() is here for performance reasons
-        val cachesLastIndex = caches.lastIndex
-        for (cacheIndex in 0..cachesLastIndex) {
-            val reverseCacheIndex = cachesLastIndex - cacheIndex
-            val cache = caches[reverseCacheIndex]
-            for (i in 0..cache.rootIndices.size() - 1) {
-                val rootIndex = cache.rootIndices[i]
-                if (rootIndex <= processedRootsUpTo) continue // roots with those indices have been processed by now
-
-                val directoryInRoot = travelPath(rootIndex, packagesPath, reverseCacheIndex, caches) ?: continue
-                val root = roots[rootIndex]
-                val result = handle(root, directoryInRoot)
-                if (result != null) {
-                    return found(directoryInRoot, root, result)
-                }
+            val directoryInRoot = getDirectory(packageInfo, i) ?: continue
+            val (result, shouldContinue) = handler(directoryInRoot, root.type)
+            if (!shouldContinue && result != null) {
+                return found(directoryInRoot, root, result)
             }
-            processedRootsUpTo = cache.rootIndices.lastOrNull() ?: processedRootsUpTo
         }
-        
+
         return notFound()
     }
 
-    // try to find a target directory corresponding to package represented by packagesPath in a given root reprenting by index
-    // possibly filling "Cache" objects with new information
-    private fun travelPath(rootIndex: Int, packagesPath: List<String>, fillCachesAfter: Int, cachesPath: List<Cache>): VirtualFile? {
-        if (rootIndex >= maxIndex) {
-            for (i in (fillCachesAfter + 1)..(cachesPath.size - 1)) {
-                // we all know roots that contain this package by now
-                cachesPath[i].rootIndices.add(maxIndex)
-                cachesPath[i].rootIndices.trimToSize()
-            }
-            return null
-        }
+    private fun getPackageInfo(packageFqName: FqName): PackageInfo {
+        packages[packageFqName]?.let { return it }
 
-        val pathRoot = roots[rootIndex]
-        val prefixPathSegments = pathRoot.prefixFqName?.pathSegments()
+        val packageInfo =
+                if (packageFqName.isRoot) {
+                    // default package exists in every root. Roots with non-default fqname are also listed here but
+                    // they will be ignored on requests with invalid fqname prefix.
+                    PackageInfo("", roots.indices.toList().toIntArray(), Array<VirtualFile?>(roots.size) { roots[it].file })
+                }
+                else {
+                    computePackageInfo(packageFqName, getPackageInfo(packageFqName.parent()))
+                }
 
-        var currentFile = pathRoot.file
+        return packages.putIfAbsent(packageFqName, packageInfo) ?: packageInfo
+    }
 
-        for (pathIndex in packagesPath.indices) {
-            val subPackageName = packagesPath[pathIndex]
-            if (prefixPathSegments != null && pathIndex < prefixPathSegments.size) {
+    // a package can only be contained in roots which contain its parent package, so only those roots are checked
+    private fun computePackageInfo(packageFqName: FqName, parentInfo: PackageInfo): PackageInfo {
+        val start = System.nanoTime()
+        val subPackageName = packageFqName.shortName().asString()
+        val depth = packageFqName.pathSegments().size
+        val packageFqNameAsString = packageFqName.asString()
+
+        val rootIndices = IntArrayList()
+        val directories = ArrayList<VirtualFile?>()
+
+        for (i in parentInfo.rootIndices.indices) {
+            val rootIndex = parentInfo.rootIndices[i]
+            val root = roots[rootIndex]
+
+            val prefixPathSegments = root.prefixFqName?.pathSegments()
+            if (prefixPathSegments != null && depth <= prefixPathSegments.size) {
                 // Traverse prefix first instead of traversing real directories
-                if (prefixPathSegments[pathIndex].identifier != subPackageName) {
-                    return null
+                if (prefixPathSegments[depth - 1].identifier == subPackageName) {
+                    rootIndices.add(rootIndex)
+                    directories.add(root.file)
                 }
-            }
-            else {
-                currentFile = currentFile.findChild(subPackageName) ?: return null
+                continue
             }
 
-            val correspondingCacheIndex = pathIndex + 1
-            if (correspondingCacheIndex > fillCachesAfter) {
-                // subPackageName exists in this root
-                cachesPath[correspondingCacheIndex].rootIndices.add(rootIndex)
+            val knownPackages = getStoredPackages(rootIndex)
+            if (knownPackages != null) {
+                if (packageFqNameAsString in knownPackages) {
+                    rootIndices.add(rootIndex)
+                    directories.add(null)
+                }
+                continue
             }
+
+            val directory = getDirectory(parentInfo, i)?.findChild(subPackageName) ?: continue
+            rootIndices.add(rootIndex)
+            directories.add(directory)
         }
 
-        return currentFile
+        val relativePath = if (parentInfo.relativePath.isEmpty()) subPackageName else parentInfo.relativePath + "/" + subPackageName
+        val packageInfo = PackageInfo(relativePath, rootIndices.toArray(), directories.toTypedArray())
+        packagesComputationTime.addAndGet(System.nanoTime() - start)
+        return packageInfo
     }
 
-    private fun cachesPath(path: List<String>): List<Cache> {
-        val caches = ArrayList<Cache>()
-        caches.add(rootCache)
-        var currentCache = rootCache
-        for (subPackageName in path) {
-            currentCache = currentCache[subPackageName]
-            caches.add(currentCache)
-        }
-        return caches
+    // null for roots which are not jars or if there's no storage
+    private fun getStoredPackages(rootIndex: Int): Set<String>? {
+        storedPackages[rootIndex]?.let { return it.packages }
+
+        val root = roots[rootIndex]
+        val packages =
+                if (storage != null && root.type == JavaRoot.RootType.BINARY && root.prefixFqName == null) storage.getPackages(root.file)
+                else null
+        storedPackages[rootIndex] = StoredPackages(packages)
+        return packages
+    }
+
+    // races are harmless here: all threads find the same directory
+    private fun getDirectory(packageInfo: PackageInfo, index: Int): VirtualFile? {
+        packageInfo.directories[index]?.let { return it }
+
+        val directory = roots[packageInfo.rootIndices[index]].file.findFileByRelativePath(packageInfo.relativePath)
+        packageInfo.directories[index] = directory
+        return directory
     }
 
     private data class FindClassRequest(val classId: ClassId, override val acceptedRootTypes: Set<JavaRoot.RootType>) : SearchRequest {
@@ -284,6 +283,3 @@ class JvmDependenciesIndex(_roots: List<JavaRoot>) {
         object NotFound : SearchResult
     }
 }
-
-private fun IntArrayList.lastOrNull() = if (isEmpty) null else get(size() - 1)
-private val IntArrayList.indices: IntRange get() = 0..(size() - 1)
\ No newline at end of file
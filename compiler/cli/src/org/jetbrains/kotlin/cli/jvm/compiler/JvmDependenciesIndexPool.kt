@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import java.io.File
+import java.lang.ref.SoftReference
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+// dependencies indices kept warm between compilations in the same process (e.g. the daemon), so that compilations with the same classpath
+// don't discover packages of its roots over and over again
+// only classpaths consisting of jars are pooled, since a jar is reliably identified by its path, size and modification time,
+// while directories (e.g. outputs of other modules) may change without notice
+// least recently used indices are evicted when the pool is full, and all of them are softly referenced to be dropped under memory pressure
+// THREADSAFE
+class JvmDependenciesIndexPool(private val maxSize: Int) {
+    private val indices = object : LinkedHashMap<String, SoftReference<JvmDependenciesIndex>>(16, 0.75f, /* accessOrder = */ true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, SoftReference<JvmDependenciesIndex>>): Boolean {
+            if (size <= maxSize) return false
+            evictions++
+            return true
+        }
+    }
+
+    private var hits = 0
+    private var misses = 0
+    private var evictions = 0
+    private var savedNanos = 0L
+
+    class Statistics(val hits: Int, val misses: Int, val evictions: Int, val savedMillis: Long) {
+        override fun toString() = "$hits hits, $misses misses, $evictions evictions, $savedMillis ms saved"
+    }
+
+    val statistics: Statistics
+        @Synchronized get() = Statistics(hits, misses, evictions, TimeUnit.NANOSECONDS.toMillis(savedNanos))
+
+    fun getOrCreate(roots: List<JavaRoot>, create: () -> JvmDependenciesIndex): JvmDependenciesIndex {
+        val key = keyOf(roots) ?: return create()
+
+        synchronized(this) {
+            val pooled = indices[key]?.get()
+            if (pooled != null) {
+                hits++
+                savedNanos += pooled.packagesComputationNanos
+                return pooled
+            }
+            misses++
+        }
+
+        val index = create()
+        synchronized(this) {
+            indices.put(key, SoftReference(index))
+        }
+        return index
+    }
+
+    @Synchronized
+    fun clear() {
+        indices.clear()
+    }
+
+    private fun keyOf(roots: List<JavaRoot>): String? {
+        val key = StringBuilder()
+        for (root in roots) {
+            val jarPath = root.file.path.removeSuffix(JAR_SEPARATOR)
+            if (root.type != JavaRoot.RootType.BINARY || root.prefixFqName != null || jarPath == root.file.path) return null
+
+            val jar = File(jarPath)
+            key.append(jarPath).append(':').append(jar.length()).append(':').append(jar.lastModified()).append(File.pathSeparatorChar)
+        }
+        return key.toString()
+    }
+
+    companion object {
+        private val JAR_SEPARATOR = "!/"
+
+        private var instance: JvmDependenciesIndexPool? = null
+
+        @JvmStatic
+        @Synchronized
+        fun getOrCreate(maxSize: Int): JvmDependenciesIndexPool {
+            val current = instance
+            if (current != null && current.maxSize == maxSize) return current
+
+            val pool = JvmDependenciesIndexPool(maxSize)
+            instance = pool
+            return pool
+        }
+
+        // pooled indices refer to the jar file system, so they are dropped together with its caches, see JarCacheTracker
+        @JvmStatic
+        @Synchronized
+        fun clearInstance() {
+            instance?.clear()
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.VirtualFile
+import java.io.*
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+// persistent map from a classpath jar to the packages it contains, used by JvmDependenciesIndex to decide which roots may contain
+// a package without probing their directories
+// jars are identified by path, size and modification time, an entry is recomputed as soon as any of them changes
+// every save starts a new generation, entries of deleted jars and of jars not used for MAX_UNUSED_GENERATIONS generations are dropped
+// THREADSAFE
+class JvmDependenciesIndexStorage private constructor(private val file: File) {
+    private class JarPackages(val length: Long, val lastModified: Long, val packages: Set<String>, @Volatile var lastUsedGeneration: Int)
+
+    private val jars = ConcurrentHashMap<String, JarPackages>()
+
+    @Volatile private var generation = 0
+
+    @Volatile private var modified = false
+
+    // returns null if the root is not a jar
+    fun getPackages(root: VirtualFile): Set<String>? {
+        val jarPath = root.path.removeSuffix(JAR_SEPARATOR)
+        if (jarPath == root.path) return null
+
+        val jarFile = File(jarPath)
+        val length = jarFile.length()
+        val lastModified = jarFile.lastModified()
+
+        val known = jars[jarPath]
+        if (known != null && known.length == length && known.lastModified == lastModified) {
+            // not a reason to save by itself, otherwise the storage would be rewritten after every compilation
+            known.lastUsedGeneration = generation
+            return known.packages
+        }
+
+        val packages = HashSet<String>()
+        collectPackages(root, "", packages)
+        jars.put(jarPath, JarPackages(length, lastModified, packages, generation))
+        modified = true
+        return packages
+    }
+
+    @Synchronized
+    fun save() {
+        if (!modified) return
+        modified = false
+
+        generation++
+        val iterator = jars.entries.iterator()
+        while (iterator.hasNext()) {
+            val (jarPath, jar) = iterator.next()
+            if (generation - jar.lastUsedGeneration > MAX_UNUSED_GENERATIONS || !File(jarPath).exists()) {
+                iterator.remove()
+            }
+        }
+
+        // jars may be added concurrently, the snapshot keeps the written count consistent with the entries
+        val entries = jars.entries.toList()
+        val tempFile = File(file.path + ".tmp")
+        try {
+            file.parentFile?.mkdirs()
+            DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+                output.writeInt(VERSION)
+                output.writeInt(generation)
+                output.writeInt(entries.size)
+                for ((jarPath, jar) in entries) {
+                    output.writeUTF(jarPath)
+                    output.writeLong(jar.length)
+                    output.writeLong(jar.lastModified)
+                    output.writeInt(jar.lastUsedGeneration)
+                    output.writeInt(jar.packages.size)
+                    for (packageFqName in jar.packages) {
+                        output.writeUTF(packageFqName)
+                    }
+                }
+            }
+            // other compiler processes may read the storage concurrently, so it's replaced at once
+            FileUtil.rename(tempFile, file)
+        }
+        catch (e: IOException) {
+            tempFile.delete()
+        }
+    }
+
+    private fun load() {
+        if (!file.exists()) return
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != VERSION) return
+
+                generation = input.readInt()
+                repeat(input.readInt()) {
+                    val jarPath = input.readUTF()
+                    val length = input.readLong()
+                    val lastModified = input.readLong()
+                    val lastUsedGeneration = input.readInt()
+                    val packages = HashSet<String>()
+                    repeat(input.readInt()) {
+                        packages.add(input.readUTF())
+                    }
+                    jars.put(jarPath, JarPackages(length, lastModified, packages, lastUsedGeneration))
+                }
+            }
+        }
+        catch (e: IOException) {
+            // corrupted storage is rebuilt from scratch
+            jars.clear()
+            generation = 0
+        }
+    }
+
+    private fun collectPackages(directory: VirtualFile, packageFqName: String, result: MutableSet<String>) {
+        for (child in directory.children) {
+            if (!child.isDirectory) continue
+
+            val childFqName = if (packageFqName.isEmpty()) child.name else packageFqName + "." + child.name
+            result.add(childFqName)
+            collectPackages(child, childFqName, result)
+        }
+    }
+
+    companion object {
+        private val VERSION = 2
+        private val MAX_UNUSED_GENERATIONS = 10
+        private val JAR_SEPARATOR = "!/"
+
+        private val storages = HashMap<File, JvmDependenciesIndexStorage>()
+
+        // storages are kept for the lifetime of the process, so that the compile daemon does not reload them for every compilation
+        @JvmStatic
+        fun getOrLoad(file: File): JvmDependenciesIndexStorage =
+                synchronized(storages) {
+                    storages.getOrPut(file.absoluteFile) {
+                        JvmDependenciesIndexStorage(file.absoluteFile).apply { load() }
+                    }
+                }
+    }
+}
@@ -25,12 +25,29 @@ import org.jetbrains.kotlin.load.kotlin.ModuleMapping
 import java.io.EOFException
 
 class JvmPackagePartProvider(val env: KotlinCoreEnvironment) : PackagePartProvider {
+    // packages are known from the persistent storage for jar roots, such roots are not opened unless they contain a requested package
+    private class Root(val file: VirtualFile, val packages: Set<String>?) {
+        fun hasPackage(packageFqName: String, pathParts: List<String>): Boolean {
+            if (packages != null) return packageFqName.isEmpty() || packageFqName in packages
+
+            //filter all roots by package path existing
+            pathParts.fold(file) {
+                parent, part ->
+                if (part.isEmpty()) parent
+                else parent.findChild(part) ?: return false
+            }
+            return true
+        }
+    }
+
     private val notLoadedRoots by lazy(LazyThreadSafetyMode.NONE) {
+        val storage = env.dependenciesIndexStorage
         env.configuration.getList(CommonConfigurationKeys.CONTENT_ROOTS).
                 filterIsInstance<JvmClasspathRoot>().
                 mapNotNull {
                     env.contentRootToVirtualFile(it);
-                }.filter { it.findChild("META-INF") != null }.toMutableList()
+                }.map { Root(it, storage?.getPackages(it)) }.
+                filter { it.hasPackage("META-INF", listOf("META-INF")) }.toMutableList()
     }
 
     private val loadedModules: MutableList<ModuleMapping> = SmartList()
@@ -47,19 +64,11 @@ class JvmPackagePartProvider(val env: KotlinCoreEnvironment) : PackagePartProvid
 
         val pathParts = packageFqName.split('.')
 
-        val relevantRoots = notLoadedRoots.filter {
-            //filter all roots by package path existing
-            pathParts.fold(it) {
-                parent, part ->
-                if (part.isEmpty()) parent
-                else  parent.findChild(part) ?: return@filter false
-            }
-            true
-        }
+        val relevantRoots = notLoadedRoots.filter { it.hasPackage(packageFqName, pathParts) }
         notLoadedRoots.removeAll(relevantRoots)
 
         loadedModules.addAll(relevantRoots.mapNotNull {
-            it.findChild("META-INF")
+            it.file.findChild("META-INF")
         }.flatMap {
             it.children.filter<VirtualFile> { it.name.endsWith(ModuleMapping.MAPPING_FILE_EXT) }
         }.map {
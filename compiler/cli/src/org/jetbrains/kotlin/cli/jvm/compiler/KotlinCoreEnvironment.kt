@@ -58,12 +58,15 @@ import org.jetbrains.kotlin.asJava.KtLightClassForFacade
 import org.jetbrains.kotlin.asJava.LightClassGenerationSupport
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.CliModuleVisibilityManagerImpl
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_DEPENDENCIES_INDEX_POOL_SIZE_PROPERTY
 import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.WARNING
 import org.jetbrains.kotlin.cli.common.toBooleanLenient
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
 import org.jetbrains.kotlin.cli.jvm.config.JVMConfigurationKeys
 import org.jetbrains.kotlin.cli.jvm.config.JavaSourceRoot
 import org.jetbrains.kotlin.cli.jvm.config.JvmClasspathRoot
@@ -111,6 +114,10 @@ class KotlinCoreEnvironment private constructor(
 
     val configuration: CompilerConfiguration = configuration.copy().apply { setReadOnly(true) }
 
+    // packages of classpath jars persisted between compiler runs, see KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY
+    val dependenciesIndexStorage: JvmDependenciesIndexStorage? =
+            System.getProperty(KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY)?.let { JvmDependenciesIndexStorage.getOrLoad(File(it)) }
+
     init {
         PersistentFSConstants.setMaxIntellisenseFileSize(FileUtilRt.LARGE_FOR_CONTENT_LOADING)
     }
@@ -125,7 +132,19 @@ class KotlinCoreEnvironment private constructor(
 
         fillClasspath(configuration)
         val fileManager = ServiceManager.getService(project, CoreJavaFileManager::class.java)
-        val index = JvmDependenciesIndex(javaRoots)
+        val indexStorage = dependenciesIndexStorage
+        if (indexStorage != null) {
+            Disposer.register(parentDisposable, object : Disposable {
+                override fun dispose() {
+                    indexStorage.save()
+                }
+            })
+        }
+        val index = getDependenciesIndexPool()?.let { pool ->
+            val index = pool.getOrCreate(javaRoots) { JvmDependenciesIndex(javaRoots, indexStorage) }
+            K2JVMCompiler.reportPerf(configuration, "DEPENDENCIES INDEX POOL: ${pool.statistics}")
+            index
+        } ?: JvmDependenciesIndex(javaRoots, indexStorage)
         (fileManager as KotlinCliJavaFileManagerImpl).initIndex(index)
 
         sourceFiles.addAll(CompileEnvironmentUtil.getKtFiles(project, getSourceRootsCheckingForDuplicates(), this.configuration, {
@@ -227,6 +246,7 @@ class KotlinCoreEnvironment private constructor(
             report(WARNING, "Classpath entry points to a file that is not a JAR archive: $path")
             return null
         }
+        JarCacheTracker.jarOpened(path)
         return jarFile
     }
 
@@ -291,6 +311,16 @@ class KotlinCoreEnvironment private constructor(
             return KotlinCoreEnvironment(parentDisposable, createApplicationEnvironment(parentDisposable, configuration, extensionConfigs), configuration)
         }
 
+        private fun getDependenciesIndexPool(): JvmDependenciesIndexPool? {
+            val size = System.getProperty(KOTLIN_COMPILER_DEPENDENCIES_INDEX_POOL_SIZE_PROPERTY) ?: return null
+            try {
+                return JvmDependenciesIndexPool.getOrCreate(size.toInt())
+            }
+            catch (e: NumberFormatException) {
+                return null
+            }
+        }
+
         // used in the daemon for jar cache cleanup
         val applicationEnvironment: JavaCoreApplicationEnvironment? get() = ourApplicationEnvironment
 
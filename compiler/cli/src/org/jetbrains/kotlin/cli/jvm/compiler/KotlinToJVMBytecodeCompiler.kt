@@ -24,11 +24,13 @@ import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.CompilerPluginContext
 import org.jetbrains.kotlin.cli.common.ExitCode
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_INLINE_CACHE_SIZE_PROPERTY
 import org.jetbrains.kotlin.cli.common.messages.*
 import org.jetbrains.kotlin.cli.common.output.outputUtils.writeAll
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
 import org.jetbrains.kotlin.cli.jvm.config.*
 import org.jetbrains.kotlin.codegen.*
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.GenerationStateEventCallback
 import org.jetbrains.kotlin.config.CompilerConfiguration
@@ -43,6 +45,7 @@ import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.name.isSubpackageOf
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.jvm.JvmClassName
 import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM
 import org.jetbrains.kotlin.util.PerformanceCounter
@@ -57,6 +60,8 @@ import java.util.concurrent.TimeUnit
 import java.util.jar.Attributes
 
 object KotlinToJVMBytecodeCompiler {
+    // Modules may be generated in parallel (see compileModules), while message collectors are not thread-safe
+    private val reportLock = Any()
 
     private fun getAbsolutePaths(directory: File, module: Module): List<String> {
         return module.getSourceFiles().map { sourceFile ->
@@ -93,7 +98,9 @@ object KotlinToJVMBytecodeCompiler {
 
         return GenerationStateEventCallback { state ->
             val currentOutput = SimpleOutputFileCollection(state.factory.currentOutput)
-            writeOutput(configuration, currentOutput, outputDir, jarPath = null, jarRuntime = false, mainClass = null)
+            synchronized(reportLock) {
+                writeOutput(configuration, currentOutput, outputDir, jarPath = null, jarRuntime = false, mainClass = null)
+            }
             state.factory.releaseGeneratedOutput()
         }
     }
@@ -130,24 +137,61 @@ object KotlinToJVMBytecodeCompiler {
 
         val generationStates = ArrayList<GenerationState>();
 
+        val filesByModule = LinkedHashMap<Module, List<KtFile>>()
         for (module in chunk) {
             ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
             val ktFiles = CompileEnvironmentUtil.getKtFiles(
                     environment.project, getAbsolutePaths(directory, module), configuration) { s -> throw IllegalStateException("Should have been checked before: " + s) }
             if (!checkKotlinPackageUsage(environment, ktFiles)) return false
+            filesByModule.put(module, ktFiles)
+        }
+
+        val moduleThreads = Math.min(configuration.get(JVMConfigurationKeys.MODULE_THREADS, 1), chunk.size)
+
+        // Modules generated in parallel read the shared results of the analysis from one snapshot, see GenerationState
+        val sharedAnalysisSnapshot =
+                if (moduleThreads > 1) GenerationState.createAnalysisSnapshot(result.moduleDescriptor, result.bindingContext) else null
+
+        fun generateModule(module: Module): GenerationState {
             val moduleOutputDirectory = File(module.getOutputDirectory())
 
             val onIndependentPartCompilationEnd =
                     createOutputFilesFlushingCallbackIfPossible(configuration, File(module.getOutputDirectory()), jarPath)
 
-            val generationState = generate(environment, result, ktFiles, module, moduleOutputDirectory,
-                                           module.getModuleName(),  onIndependentPartCompilationEnd)
-
-            outputFiles.put(module, generationState.factory)
-            generationStates.add(generationState);
+            return generate(environment, result, filesByModule[module]!!, module, moduleOutputDirectory,
+                            module.getModuleName(),  onIndependentPartCompilationEnd, sharedAnalysisSnapshot)
         }
 
         try {
+            if (moduleThreads > 1) {
+                val heapBudgetMegabytes = configuration.get(JVMConfigurationKeys.MODULE_HEAP_BUDGET)
+                val heapBudgetBytes = if (heapBudgetMegabytes != null) heapBudgetMegabytes.toLong() * 1024 * 1024 else Long.MAX_VALUE
+
+                ModuleCodegenScheduler(chunk, moduleThreads, heapBudgetBytes).run(
+                        { module ->
+                            val start = PerformanceCounter.currentTime()
+                            val generationState = generateModule(module)
+                            val time = TimeUnit.NANOSECONDS.toMillis(PerformanceCounter.currentTime() - start)
+                            synchronized(reportLock) {
+                                K2JVMCompiler.reportPerf(environment.configuration,
+                                                         "MODULE: ${module.getModuleName()}-${module.getModuleType()} in $time ms (wall time)")
+                            }
+                            generationState
+                        },
+                        { module, generationState ->
+                            outputFiles.put(module, generationState.factory)
+                            generationStates.add(generationState)
+                        })
+            }
+            else {
+                for (module in chunk) {
+                    ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
+                    val generationState = generateModule(module)
+                    outputFiles.put(module, generationState.factory)
+                    generationStates.add(generationState);
+                }
+            }
+
             for (module in chunk) {
                 ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
                 writeOutput(configuration, outputFiles[module]!!, File(module.getOutputDirectory()), jarPath, jarRuntime, null)
@@ -366,7 +410,8 @@ object KotlinToJVMBytecodeCompiler {
             module: Module?,
             outputDirectory: File?,
             moduleName: String?,
-            onIndependentPartCompilationEnd: GenerationStateEventCallback
+            onIndependentPartCompilationEnd: GenerationStateEventCallback,
+            sharedAnalysisSnapshot: BindingContext? = null
     ): GenerationState {
         val configuration = environment.configuration
         val incrementalCompilationComponents = configuration.get(JVMConfigurationKeys.INCREMENTAL_COMPILATION_COMPONENTS)
@@ -391,7 +436,7 @@ object KotlinToJVMBytecodeCompiler {
                 environment.project,
                 ClassBuilderFactories.BINARIES,
                 result.moduleDescriptor,
-                result.bindingContext,
+                sharedAnalysisSnapshot ?: result.bindingContext,
                 sourceFiles,
                 configuration.get(JVMConfigurationKeys.DISABLE_CALL_ASSERTIONS, false),
                 configuration.get(JVMConfigurationKeys.DISABLE_PARAM_ASSERTIONS, false),
@@ -407,7 +452,10 @@ object KotlinToJVMBytecodeCompiler {
                 outputDirectory,
                 incrementalCompilationComponents,
                 onIndependentPartCompilationEnd = onIndependentPartCompilationEnd,
-                dumpBinarySignatureMappingTo = configuration.get(JVMConfigurationKeys.DECLARATIONS_JSON_PATH)?.let { File(it) })
+                dumpBinarySignatureMappingTo = configuration.get(JVMConfigurationKeys.DECLARATIONS_JSON_PATH)?.let { File(it) },
+                codegenThreads = configuration.get(JVMConfigurationKeys.CODEGEN_THREADS, 1),
+                sharedInlineCache = getSharedInlineCache(),
+                generatedConcurrently = sharedAnalysisSnapshot != null)
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
         val generationStart = PerformanceCounter.currentTime()
@@ -422,25 +470,41 @@ object KotlinToJVMBytecodeCompiler {
         val speed = numberOfLines.toFloat() * 1000 / time
         val message = "GENERATE: $numberOfSourceFiles files ($numberOfLines lines) ${desc}in $time ms - ${"%.3f".format(speed)} loc/s"
 
-        K2JVMCompiler.reportPerf(environment.configuration, message)
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
 
-        AnalyzerWithCompilerReport.reportDiagnostics(
-                FilteredJvmDiagnostics(
-                        generationState.collectedExtraJvmDiagnostics,
-                        result.bindingContext.diagnostics
-                ),
-                environment.messageCollector()
-        )
+        synchronized(reportLock) {
+            K2JVMCompiler.reportPerf(environment.configuration, message)
+            generationState.inlineCache.sharedCache?.let {
+                K2JVMCompiler.reportPerf(environment.configuration, "INLINE CACHE: ${it.statistics}")
+            }
 
-        AnalyzerWithCompilerReport.reportBytecodeVersionErrors(
-                generationState.extraJvmDiagnosticsTrace.bindingContext, environment.messageCollector()
-        );
+            AnalyzerWithCompilerReport.reportDiagnostics(
+                    FilteredJvmDiagnostics(
+                            generationState.collectedExtraJvmDiagnostics,
+                            result.bindingContext.diagnostics
+                    ),
+                    environment.messageCollector()
+            )
+
+            AnalyzerWithCompilerReport.reportBytecodeVersionErrors(
+                    generationState.extraJvmDiagnosticsTrace.bindingContext, environment.messageCollector()
+            );
+        }
 
         ProgressIndicatorAndCompilationCanceledStatus.checkCanceled()
         return generationState
     }
 
+    private fun getSharedInlineCache(): SharedInlineCache? {
+        val sizeInMegabytes = System.getProperty(KOTLIN_COMPILER_INLINE_CACHE_SIZE_PROPERTY) ?: return null
+        try {
+            return SharedInlineCache.getOrCreate(sizeInMegabytes.toLong() * 1024 * 1024)
+        }
+        catch (e: NumberFormatException) {
+            return null
+        }
+    }
+
     private fun checkKotlinPackageUsage(environment: KotlinCoreEnvironment, files: Collection<KtFile>): Boolean {
         if (environment.configuration.get(CLIConfigurationKeys.ALLOW_KOTLIN_PACKAGE) == true) {
             return true
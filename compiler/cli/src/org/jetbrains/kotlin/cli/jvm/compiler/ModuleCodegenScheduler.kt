@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler
+
+import org.jetbrains.kotlin.modules.Module
+import java.io.File
+import java.util.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs a task for each module of a chunk on a fixed number of threads, starting a module only after the modules it depends on.
+ * A module depends on another one if the output directory of the latter is among its classpath roots; cyclic dependencies are ignored.
+ *
+ * While the used heap exceeds [heapBudgetBytes], no new module is started until the running ones finish (one module is always allowed).
+ */
+internal class ModuleCodegenScheduler(
+        private val modules: List<Module>,
+        private val threads: Int,
+        private val heapBudgetBytes: Long
+) {
+    private val dependencies: Map<Module, List<Module>> = run {
+        val moduleByOutput = modules.associateBy { File(it.getOutputDirectory()).absoluteFile }
+        modules.associate { module ->
+            module to module.getClasspathRoots().mapNotNull { moduleByOutput[File(it).absoluteFile] }.filter { it != module }
+        }
+    }
+
+    fun <T> run(task: (Module) -> T, onFinished: (Module, T) -> Unit) {
+        val pending = ArrayList(modules)
+        val finished = HashSet<Module>()
+        val executor = Executors.newFixedThreadPool(threads, THREAD_FACTORY)
+        val completion = ExecutorCompletionService<Pair<Module, T>>(executor)
+        var running = 0
+
+        try {
+            while (pending.isNotEmpty() || running > 0) {
+                while (pending.isNotEmpty() && running < threads && (running == 0 || hasHeapHeadroom())) {
+                    val next = pending.firstOrNull { finished.containsAll(dependencies[it]!!) }
+                               // Nothing is ready and nothing is running: the rest of the modules depend on each other
+                               ?: if (running == 0) pending.first() else break
+                    pending.remove(next)
+                    completion.submit(Callable { next to task(next) })
+                    running++
+                }
+
+                val (module, result) = getResult(completion.take())
+                running--
+                finished.add(module)
+                onFinished(module, result)
+            }
+        }
+        finally {
+            // Codegen doesn't check for interruption, so the running tasks are waited for: they use the environment
+            // which is disposed as soon as the compilation is over
+            executor.shutdownNow()
+            awaitTermination(executor)
+        }
+    }
+
+    private fun awaitTermination(executor: ExecutorService) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            }
+        }
+        catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    private fun hasHeapHeadroom(): Boolean {
+        val runtime = Runtime.getRuntime()
+        return runtime.totalMemory() - runtime.freeMemory() < heapBudgetBytes
+    }
+
+    private fun <R> getResult(future: Future<R>): R {
+        try {
+            return future.get()
+        }
+        catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    companion object {
+        private val THREAD_FACTORY = object : ThreadFactory {
+            private val counter = AtomicInteger()
+
+            override fun newThread(r: Runnable): Thread {
+                val thread = Thread(r, "Kotlin module codegen worker " + counter.incrementAndGet())
+                thread.isDaemon = true
+                return thread
+            }
+        }
+    }
+}
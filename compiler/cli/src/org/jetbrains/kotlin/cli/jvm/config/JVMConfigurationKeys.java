@@ -37,6 +37,12 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("disable optimization");
     public static final CompilerConfigurationKey<Boolean> INHERIT_MULTIFILE_PARTS =
             CompilerConfigurationKey.create("compile multifile classes to a hierarchy of parts and facade");
+    public static final CompilerConfigurationKey<Integer> CODEGEN_THREADS =
+            CompilerConfigurationKey.create("number of threads for parallel code generation");
+    public static final CompilerConfigurationKey<Integer> MODULE_THREADS =
+            CompilerConfigurationKey.create("number of threads for parallel code generation of modules");
+    public static final CompilerConfigurationKey<Integer> MODULE_HEAP_BUDGET =
+            CompilerConfigurationKey.create("used heap size in megabytes above which no more modules are generated in parallel");
 
     public static final CompilerConfigurationKey<IncrementalCompilationComponents> INCREMENTAL_COMPILATION_COMPONENTS =
             CompilerConfigurationKey.create("incremental cache provider");
@@ -60,6 +60,9 @@ interface CompilerCallbackServicesFacade : Remote {
     @Throws(RemoteException::class)
     fun incrementalCache_registerInline(target: TargetId, fromPath: String, jvmSignature: String, toPath: String)
 
+    @Throws(RemoteException::class)
+    fun incrementalCache_registerInlines(target: TargetId, inlines: Collection<InlineRegistration>)
+
     @Throws(RemoteException::class)
     fun incrementalCache_getClassFilePath(target: TargetId, internalClassName: String): String
 
@@ -87,6 +90,13 @@ interface CompilerCallbackServicesFacade : Remote {
 }
 
 
+data class InlineRegistration(val fromPath: String, val jvmSignature: String, val toPath: String) : Serializable {
+    companion object {
+        private val serialVersionUID: Long = 1L
+    }
+}
+
+
 class RmiFriendlyCompilationCancelledException: Exception(), Serializable {
     companion object {
         private val serialVersionUID: Long = 8228357578L // just a random number, but should never be changed to avoid deserialization problems
@@ -48,6 +48,10 @@ val COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS: Long = 1000L // 1 sec
 val COMPILE_DAEMON_MEMORY_THRESHOLD_INFINITE: Long = 0L
 val COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS: Long = 10000L // 10 secs
 val COMPILE_DAEMON_TIMEOUT_INFINITE_MS: Long = 0L
+val COMPILE_DAEMON_DEFAULT_INLINE_CACHE_SIZE_MB: Int = 64
+val COMPILE_DAEMON_DEFAULT_COMPILATION_HEAP_RESERVE_MB: Int = 256
+val COMPILE_DAEMON_DEFAULT_DEPENDENCIES_INDEX_POOL_SIZE: Int = 4
+val COMPILE_DAEMON_DEPENDENCIES_INDEX_FILE_NAME: String = "kotlin-daemon-dependencies.index"
 
 val COMPILE_DAEMON_DEFAULT_RUN_DIR_PATH: String get() =
     FileSystem.getRuntimeStateFilesPath("kotlin", "daemon")
@@ -207,7 +211,10 @@ data class DaemonOptions(
         var shutdownDelayMilliseconds: Long = COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS,
         var forceShutdownTimeoutMilliseconds: Long = COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS,
         var verbose: Boolean = false,
-        var reportPerf: Boolean = false
+        var reportPerf: Boolean = false,
+        var inlineCacheSizeMegabytes: Int = COMPILE_DAEMON_DEFAULT_INLINE_CACHE_SIZE_MB,
+        var compilationHeapReserveMegabytes: Int = COMPILE_DAEMON_DEFAULT_COMPILATION_HEAP_RESERVE_MB,
+        var dependenciesIndexPoolSize: Int = COMPILE_DAEMON_DEFAULT_DEPENDENCIES_INDEX_POOL_SIZE
 ) : OptionsGroup {
 
     override val mappers: List<PropMapper<*, *, *>>
@@ -219,7 +226,10 @@ data class DaemonOptions(
                        PropMapper(this, DaemonOptions::shutdownDelayMilliseconds, fromString = { it.toLong() }, skipIf = { it == COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS }, mergeDelimiter = "="),
                        PropMapper(this, DaemonOptions::forceShutdownTimeoutMilliseconds, fromString = { it.toLong() }, skipIf = { it == COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS }, mergeDelimiter = "="),
                        BoolPropMapper(this, DaemonOptions::verbose),
-                       BoolPropMapper(this, DaemonOptions::reportPerf))
+                       BoolPropMapper(this, DaemonOptions::reportPerf),
+                       PropMapper(this, DaemonOptions::inlineCacheSizeMegabytes, fromString = { it.toInt() }, skipIf = { it == COMPILE_DAEMON_DEFAULT_INLINE_CACHE_SIZE_MB }, mergeDelimiter = "="),
+                       PropMapper(this, DaemonOptions::compilationHeapReserveMegabytes, fromString = { it.toInt() }, skipIf = { it == COMPILE_DAEMON_DEFAULT_COMPILATION_HEAP_RESERVE_MB }, mergeDelimiter = "="),
+                       PropMapper(this, DaemonOptions::dependenciesIndexPoolSize, fromString = { it.toInt() }, skipIf = { it == COMPILE_DAEMON_DEFAULT_DEPENDENCIES_INDEX_POOL_SIZE }, mergeDelimiter = "="))
 }
 
 // TODO: consider implementing generic approach to it or may be replace getters with ones returning default if necessary
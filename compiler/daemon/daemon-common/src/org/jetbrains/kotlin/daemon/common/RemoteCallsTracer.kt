@@ -0,0 +1,29 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.daemon.common
+
+import java.rmi.Remote
+import java.rmi.RemoteException
+
+// optionally implemented by a RemoteOperationsTracer, kept separate so that existing tracers don't have to implement it
+interface RemoteCallsTracer : Remote {
+
+    // statistics of the calls made by the daemon back to the client during the operation, reported right before after(id)
+    // batchedItems is the total number of items (lookups, inline registrations) passed in batched calls
+    @Throws(RemoteException::class)
+    fun remoteCalls(id: String, calls: Long, batchedItems: Long, nanos: Long)
+}
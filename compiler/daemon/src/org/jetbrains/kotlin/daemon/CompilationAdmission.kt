@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.daemon.common.usedMemory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Lets compilations run concurrently as long as the heap allows: another compilation is started only if at least
+ * [heapReserveBytes] of heap are available, otherwise it waits for some of the running compilations to finish
+ * (or for the garbage collector to free enough memory). A single compilation is always admitted.
+ */
+class CompilationAdmission(private val heapReserveBytes: Long) {
+    private val lock = ReentrantLock()
+    private val compilationFinished = lock.newCondition()
+    private var running = 0
+
+    fun <R> admit(body: () -> R): R {
+        lock.withLock {
+            while (running > 0 && availableMemory() < heapReserveBytes) {
+                compilationFinished.await(HEAP_RECHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)
+            }
+            running++
+        }
+        try {
+            return body()
+        }
+        finally {
+            lock.withLock {
+                running--
+                compilationFinished.signalAll()
+            }
+        }
+    }
+
+    private fun availableMemory(): Long = Runtime.getRuntime().maxMemory() - usedMemory(withGC = false)
+
+    companion object {
+        private val HEAP_RECHECK_INTERVAL_MS = 1000L
+    }
+}
@@ -16,12 +16,13 @@
 
 package org.jetbrains.kotlin.daemon
 
-import com.intellij.openapi.vfs.impl.ZipHandler
-import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
 import org.jetbrains.kotlin.cli.common.CLICompiler
 import org.jetbrains.kotlin.cli.common.ExitCode
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_DEPENDENCIES_INDEX_POOL_SIZE_PROPERTY
 import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY
-import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_INLINE_CACHE_SIZE_PROPERTY
+import org.jetbrains.kotlin.cli.jvm.compiler.JarCacheTracker
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.daemon.common.*
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
@@ -81,6 +82,14 @@ class CompileServiceImpl(
 
     init {
         System.setProperty(KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY, "true")
+        // inline functions cache is kept alive between compilations, see SharedInlineCache
+        if (daemonOptions.inlineCacheSizeMegabytes > 0) {
+            System.setProperty(KOTLIN_COMPILER_INLINE_CACHE_SIZE_PROPERTY, daemonOptions.inlineCacheSizeMegabytes.toString())
+        }
+        // classpath indices are kept warm between compilations, see JvmDependenciesIndexPool
+        if (daemonOptions.dependenciesIndexPoolSize > 0) {
+            System.setProperty(KOTLIN_COMPILER_DEPENDENCIES_INDEX_POOL_SIZE_PROPERTY, daemonOptions.dependenciesIndexPoolSize.toString())
+        }
     }
 
     // wrapped in a class to encapsulate alive check logic
@@ -92,6 +101,7 @@ class CompileServiceImpl(
 
     private val sessionsIdCounter = AtomicInteger(0)
     private val compilationsCounter = AtomicInteger(0)
+    private val admission = CompilationAdmission(daemonOptions.compilationHeapReserveMegabytes.toLong() * 1024 * 1024)
     private val internalRng = Random()
 
     private val classpathWatcher = LazyClasspathWatcher(compilerId.compilerClasspath)
@@ -124,6 +134,9 @@ class CompileServiceImpl(
     init {
         val runFileDir = File(daemonOptions.runFilesPathOrDefault)
         runFileDir.mkdirs()
+        if (System.getProperty(KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY) == null) {
+            System.setProperty(KOTLIN_COMPILER_DEPENDENCIES_INDEX_PATH_PROPERTY, File(runFileDir, COMPILE_DAEMON_DEPENDENCIES_INDEX_FILE_NAME).absolutePath)
+        }
         runFile = File(runFileDir,
                        makeRunFilenameString(timestamp = "%tFT%<tH-%<tM-%<tS.%<tLZ".format(Calendar.getInstance(TimeZone.getTimeZone("Z"))),
                                              digest = compilerId.compilerClasspath.map { File(it).absolutePath }.distinctStringsDigest().toHexString(),
@@ -179,7 +192,6 @@ class CompileServiceImpl(
         synchronized(state.sessions) {
             state.sessions.remove(sessionId)
             log.info("cleaning after session $sessionId")
-            clearJarCache()
             if (state.sessions.isEmpty()) {
                 // TODO: and some goes here
             }
@@ -413,21 +425,31 @@ class CompileServiceImpl(
 
                 operationsTracer?.before("compile")
                 compilationsCounter.incrementAndGet()
-                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+                val rpcProfiler = RemoteCallsCounters(if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler())
                 val eventManger = EventMangerImpl()
                 val compilerMessagesStream = PrintStream(BufferedOutputStream(RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler), 4096))
                 val serviceOutputStream = PrintStream(BufferedOutputStream(RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler), 4096))
                 try {
-                    checkedCompile(args, serviceOutputStream, rpcProfiler) {
-                        val res = body(compilerMessagesStream, eventManger, rpcProfiler).code
-                        _lastUsedSeconds = nowSeconds()
-                        res
+                    // compilations run concurrently in separate environments, sharing the jar cache of the application environment
+                    admission.admit {
+                        JarCacheTracker.acquire()
+                        try {
+                            checkedCompile(args, serviceOutputStream, rpcProfiler) {
+                                val res = body(compilerMessagesStream, eventManger, rpcProfiler).code
+                                _lastUsedSeconds = nowSeconds()
+                                res
+                            }
+                        }
+                        finally {
+                            JarCacheTracker.release()
+                        }
                     }
                 }
                 finally {
                     serviceOutputStream.flush()
                     compilerMessagesStream.flush()
                     eventManger.fireCompilationFinished()
+                    (operationsTracer as? RemoteCallsTracer)?.remoteCalls("compile", rpcProfiler.calls, rpcProfiler.batchedItems, rpcProfiler.nanos)
                     operationsTracer?.after("compile")
                 }
             }
@@ -486,11 +508,6 @@ class CompileServiceImpl(
         }
     }
 
-    private fun clearJarCache() {
-        ZipHandler.clearFileAccessorCache()
-        (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
-    }
-
     // copied (with edit) from gradle plugin
     private fun callVoidStaticMethod(classFqName: String, methodName: String) {
         // compiler classloader == current classloader for now
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.daemon.common.Profiler
+import java.util.concurrent.atomic.AtomicLong
+
+// counts the calls made to the client during a compilation, on top of the profiling done by the underlying profiler
+// the counters are reported to RemoteCallsTracer at the end of the compilation
+class RemoteCallsCounters(private val profiler: Profiler) : Profiler by profiler {
+    private val callsCounter = AtomicLong()
+    private val batchedItemsCounter = AtomicLong()
+    private val nanosCounter = AtomicLong()
+
+    val calls: Long get() = callsCounter.get()
+    val batchedItems: Long get() = batchedItemsCounter.get()
+    val nanos: Long get() = nanosCounter.get()
+
+    override fun <R> withMeasure(obj: Any?, body: () -> R): R {
+        val start = System.nanoTime()
+        try {
+            return profiler.withMeasure(obj, body)
+        }
+        finally {
+            callsCounter.incrementAndGet()
+            nanosCounter.addAndGet(System.nanoTime() - start)
+        }
+    }
+
+    fun countBatchedItems(items: Int) {
+        batchedItemsCounter.addAndGet(items.toLong())
+    }
+}
+
+fun <R> Profiler.withMeasureBatch(obj: Any?, items: Int, body: () -> R): R {
+    (this as? RemoteCallsCounters)?.countBatchedItems(items)
+    return withMeasure(obj, body)
+}
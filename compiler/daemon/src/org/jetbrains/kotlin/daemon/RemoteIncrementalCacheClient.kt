@@ -18,30 +18,96 @@ package org.jetbrains.kotlin.daemon
 
 import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
 import org.jetbrains.kotlin.daemon.common.DummyProfiler
+import org.jetbrains.kotlin.daemon.common.InlineRegistration
 import org.jetbrains.kotlin.daemon.common.Profiler
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCache
 import org.jetbrains.kotlin.load.kotlin.incremental.components.JvmPackagePartProto
 import org.jetbrains.kotlin.modules.TargetId
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
+// the incremental cache is only updated by the client after the compilation, so all the answers are cached here for the compilation
+// and inline registrations are sent to the client in batches
 class RemoteIncrementalCacheClient(val facade: CompilerCallbackServicesFacade, val target: TargetId, val profiler: Profiler = DummyProfiler()): IncrementalCache {
 
-    override fun getObsoletePackageParts(): Collection<String> = profiler.withMeasure(this) { facade.incrementalCache_getObsoletePackageParts(target) }
+    private class Answers<T : Any> {
+        private val answers = ConcurrentHashMap<String, Any>()
 
-    override fun getObsoleteMultifileClasses(): Collection<String> = profiler.withMeasure(this) { facade.incrementalCache_getObsoleteMultifileClassFacades(target) }
+        fun getOrCompute(key: String, compute: () -> T?): T? {
+            val answer = answers[key]
+            if (answer != null) {
+                @Suppress("UNCHECKED_CAST")
+                return if (answer === NULL) null else answer as T
+            }
+            val computed = compute()
+            answers.put(key, computed ?: NULL)
+            return computed
+        }
+    }
+
+    private val obsoletePackageParts by lazy { profiler.withMeasure(this) { facade.incrementalCache_getObsoletePackageParts(target) } }
+    private val obsoleteMultifileClasses by lazy { profiler.withMeasure(this) { facade.incrementalCache_getObsoleteMultifileClassFacades(target) } }
+    private val moduleMappingData by lazy { profiler.withMeasure(this) { facade.incrementalCache_getModuleMappingData(target) } }
+
+    private val stableMultifileFacadeParts = Answers<Collection<String>>()
+    private val packagePartData = Answers<JvmPackagePartProto>()
+    private val multifileFacades = Answers<String>()
+    private val classFilePaths = Answers<String>()
+
+    private val inlineRegistrations = ArrayList<InlineRegistration>()
 
-    override fun getStableMultifileFacadeParts(facadeInternalName: String): Collection<String>? = profiler.withMeasure(this) { facade.incrementalCache_getMultifileFacadeParts(target, facadeInternalName) }
+    override fun getObsoletePackageParts(): Collection<String> = obsoletePackageParts
 
-    override fun getPackagePartData(partInternalName: String): JvmPackagePartProto? = profiler.withMeasure(this) { facade.incrementalCache_getPackagePartData(target, partInternalName) }
+    override fun getObsoleteMultifileClasses(): Collection<String> = obsoleteMultifileClasses
 
-    override fun getMultifileFacade(partInternalName: String): String? = profiler.withMeasure(this) { facade.incrementalCache_getMultifileFacade(target, partInternalName) }
+    override fun getStableMultifileFacadeParts(facadeInternalName: String): Collection<String>? = stableMultifileFacadeParts.getOrCompute(facadeInternalName) {
+        profiler.withMeasure(this) { facade.incrementalCache_getMultifileFacadeParts(target, facadeInternalName) }
+    }
+
+    override fun getPackagePartData(partInternalName: String): JvmPackagePartProto? = packagePartData.getOrCompute(partInternalName) {
+        profiler.withMeasure(this) { facade.incrementalCache_getPackagePartData(target, partInternalName) }
+    }
 
-    override fun getModuleMappingData(): ByteArray? = profiler.withMeasure(this) { facade.incrementalCache_getModuleMappingData(target) }
+    override fun getMultifileFacade(partInternalName: String): String? = multifileFacades.getOrCompute(partInternalName) {
+        profiler.withMeasure(this) { facade.incrementalCache_getMultifileFacade(target, partInternalName) }
+    }
+
+    override fun getModuleMappingData(): ByteArray? = moduleMappingData
 
     override fun registerInline(fromPath: String, jvmSignature: String, toPath: String) {
-        profiler.withMeasure(this) { facade.incrementalCache_registerInline(target, fromPath, jvmSignature, toPath) }
+        synchronized(inlineRegistrations) {
+            inlineRegistrations.add(InlineRegistration(fromPath, jvmSignature, toPath))
+            if (inlineRegistrations.size >= INLINE_REGISTRATIONS_BATCH_SIZE) {
+                flush()
+            }
+        }
+    }
+
+    override fun getClassFilePath(internalClassName: String): String = classFilePaths.getOrCompute(internalClassName) {
+        profiler.withMeasure(this) { facade.incrementalCache_getClassFilePath(target, internalClassName) }
+    }!!
+
+    override fun close() {
+        flush()
+        profiler.withMeasure(this) { facade.incrementalCache_close(target) }
     }
 
-    override fun getClassFilePath(internalClassName: String): String = profiler.withMeasure(this) { facade.incrementalCache_getClassFilePath(target,internalClassName) }
+    fun flush() {
+        synchronized(inlineRegistrations) {
+            if (inlineRegistrations.isEmpty()) return
 
-    override fun close(): Unit = profiler.withMeasure(this) { facade.incrementalCache_close(target) }
+            profiler.withMeasureBatch(this, inlineRegistrations.size) {
+                facade.incrementalCache_registerInlines(target, ArrayList(inlineRegistrations))
+            }
+            inlineRegistrations.clear()
+        }
+    }
+
+    companion object {
+        private val NULL = Any()
+        // Bounded by size rather than by a flush interval for the same reasons as lookups in RemoteLookupTrackerClient,
+        // the remaining registrations are sent on close. Registrations are far fewer than lookups,
+        // so a smaller batch still needs only a few calls per compilation
+        private val INLINE_REGISTRATIONS_BATCH_SIZE = 1000
+    }
 }
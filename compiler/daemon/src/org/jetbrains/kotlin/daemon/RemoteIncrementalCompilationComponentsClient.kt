@@ -23,12 +23,20 @@ import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
 import org.jetbrains.kotlin.daemon.common.DummyProfiler
 import org.jetbrains.kotlin.daemon.common.Profiler
+import java.util.concurrent.ConcurrentHashMap
 
 
 class RemoteIncrementalCompilationComponentsClient(val facade: CompilerCallbackServicesFacade, eventManger: EventManger, val profiler: Profiler = DummyProfiler()) : IncrementalCompilationComponents {
     val remoteLookupTrackerClient = RemoteLookupTrackerClient(facade, eventManger, profiler)
 
-    override fun getIncrementalCache(target: TargetId): IncrementalCache = RemoteIncrementalCacheClient(facade, target, profiler)
+    private val incrementalCacheClients = ConcurrentHashMap<TargetId, RemoteIncrementalCacheClient>()
+
+    init {
+        eventManger.onCompilationFinished { incrementalCacheClients.values.forEach { it.flush() } }
+    }
+
+    override fun getIncrementalCache(target: TargetId): IncrementalCache =
+            incrementalCacheClients.getOrPut(target) { RemoteIncrementalCacheClient(facade, target, profiler) }
 
     override fun getLookupTracker(): LookupTracker = remoteLookupTrackerClient
 }
@@ -34,6 +34,7 @@ class RemoteLookupTrackerClient(val facade: CompilerCallbackServicesFacade, val
 
     override val requiresPosition: Boolean = profiler.withMeasure(this) { facade.lookupTracker_requiresPosition() }
 
+    @Synchronized
     override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
         if (isDoNothing) return
 
@@ -42,19 +43,34 @@ class RemoteLookupTrackerClient(val facade: CompilerCallbackServicesFacade, val
         val internedName = interner.intern(name)
 
         lookups.add(LookupInfo(internedFilePath, position, internedScopeFqName, scopeKind, internedName))
+
+        // sending lookups in batches bounds the memory held by them on a large build, while keeping the number of remote calls low
+        if (lookups.size >= LOOKUPS_BATCH_SIZE) {
+            flush()
+        }
     }
 
     init {
         eventManger.onCompilationFinished { flush() }
     }
 
+    @Synchronized
     private fun flush() {
         if (isDoNothing || lookups.isEmpty()) return
 
-        profiler.withMeasure(this) {
+        profiler.withMeasureBatch(this, lookups.size) {
             facade.lookupTracker_record(lookups)
         }
 
         lookups.clear()
     }
+
+    companion object {
+        // Batches are bounded by size rather than by a flush interval: the size is what bounds the memory held here,
+        // and a timer would need another thread calling the client while the compiler records lookups.
+        // The remaining lookups are sent when the compilation finishes, so they are never held longer than that.
+        // A batch of this size is a few megabytes when serialized, which is small next to the rest of the compilation,
+        // while a large build is still sent in a few calls
+        private val LOOKUPS_BATCH_SIZE = 50000
+    }
 }
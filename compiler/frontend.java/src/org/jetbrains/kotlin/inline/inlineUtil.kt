@@ -25,8 +25,10 @@ import org.jetbrains.kotlin.serialization.deserialization.TypeTable
 import org.jetbrains.kotlin.serialization.jvm.BitEncoding
 import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
 
-fun inlineFunctionsJvmNames(bytes: ByteArray): Set<String> {
-    val header = readKotlinHeader(bytes)
+fun inlineFunctionsJvmNames(bytes: ByteArray): Set<String> =
+        inlineFunctionsJvmNames(readKotlinHeader(bytes))
+
+fun inlineFunctionsJvmNames(header: KotlinClassHeader): Set<String> {
     val annotationData = header.data
     val strings = header.strings
 
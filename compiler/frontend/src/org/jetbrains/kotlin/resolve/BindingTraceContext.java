@@ -17,6 +17,7 @@
 package org.jetbrains.kotlin.resolve;
 
 import com.google.common.collect.ImmutableMap;
+import kotlin.jvm.functions.Function3;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
@@ -36,10 +37,15 @@ public class BindingTraceContext implements BindingTrace {
     /* package */ final static boolean TRACK_REWRITES = false;
     /* package */ final static boolean TRACK_WITH_STACK_TRACES = true;
 
+    // Keeps the values of each slice together, see SliceIndexedSlicedMap
+    private final static boolean SLICE_INDEXED_MAPS = "true".equals(System.getProperty("kotlin.binding.context.slice.indexed.maps"));
+
     private final MutableSlicedMap map;
     private final MutableDiagnosticsWithSuppression mutableDiagnostics;
 
-    private final BindingContext bindingContext = new BindingContext() {
+    private final BindingContext bindingContext = new Context();
+
+    private class Context implements BindingContext {
 
         @NotNull
         @Override
@@ -75,11 +81,106 @@ public class BindingTraceContext implements BindingTrace {
         public void addOwnDataTo(@NotNull BindingTrace trace, boolean commitDiagnostics) {
             BindingContextUtils.addOwnDataTo(trace, null, commitDiagnostics, map, mutableDiagnostics);
         }
-    };
+
+        @NotNull
+        private BindingContext createSnapshot(@NotNull final BindingContext lockedContext) {
+            if (!(map instanceof SlicedMapImpl)) return lockedContext;
+
+            SlicedMap snapshot = ((SlicedMapImpl) map).snapshot(new SlicedMap() {
+                @Override
+                public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+                    return lockedContext.get(slice, key);
+                }
+
+                @Override
+                public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+                    return lockedContext.getKeys(slice);
+                }
+
+                @Override
+                public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+                    throw new UnsupportedOperationException("Binding context can't be iterated");
+                }
+            });
+            return new SnapshotContext(BindingTraceContext.this, snapshot, lockedContext);
+        }
+    }
+
+    /**
+     * Returns a context which reads the values recorded in the trace of {@code context} so far without locking, see
+     * {@link SlicedMapImpl#snapshot}. Other values are read from {@code lockedContext}, a view of the same trace which takes the lock
+     * guarding its modifications. Used by parallel code generation, which reads the results of the analysis while lazy resolution on
+     * other threads may record more of them. Returns {@code context} if it is a snapshot itself, and {@code lockedContext} if
+     * {@code context} can't be read this way. Must be called under that lock.
+     */
+    @NotNull
+    public static BindingContext createSnapshot(@NotNull BindingContext context, @NotNull BindingContext lockedContext) {
+        if (context instanceof SnapshotContext) return context;
+        if (!(context instanceof Context)) return lockedContext;
+        return ((Context) context).createSnapshot(lockedContext);
+    }
+
+    private static class SnapshotContext implements BindingContext {
+        private final BindingTraceContext trace;
+        private final SlicedMap snapshot;
+        private final BindingContext lockedContext;
+
+        private SnapshotContext(@NotNull BindingTraceContext trace, @NotNull SlicedMap snapshot, @NotNull BindingContext lockedContext) {
+            this.trace = trace;
+            this.snapshot = snapshot;
+            this.lockedContext = lockedContext;
+        }
+
+        @NotNull
+        @Override
+        public Diagnostics getDiagnostics() {
+            return lockedContext.getDiagnostics();
+        }
+
+        @Override
+        public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+            V value = snapshot.get(slice, key);
+            if (value == null && trace.mayResolveOnGet(slice)) {
+                return lockedContext.get(slice, key);
+            }
+            return value;
+        }
+
+        @NotNull
+        @Override
+        public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+            return lockedContext.getKeys(slice);
+        }
+
+        @NotNull
+        @TestOnly
+        @Override
+        public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+            return lockedContext.getSliceContents(slice);
+        }
+
+        @Nullable
+        @Override
+        public KotlinType getType(@NotNull KtExpression expression) {
+            KotlinTypeInfo typeInfo = get(BindingContext.EXPRESSION_TYPE_INFO, expression);
+            return typeInfo != null ? typeInfo.getType() : null;
+        }
+
+        @Override
+        public void addOwnDataTo(@NotNull BindingTrace trace, boolean commitDiagnostics) {
+            lockedContext.addOwnDataTo(trace, commitDiagnostics);
+        }
+    }
 
     public BindingTraceContext() {
+        this(createSlicedMap());
+    }
+
+    @NotNull
+    /* package */ static MutableSlicedMap createSlicedMap() {
         //noinspection ConstantConditions
-        this(TRACK_REWRITES ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create());
+        if (TRACK_REWRITES) return new TrackingSlicedMap(TRACK_WITH_STACK_TRACES);
+        return SLICE_INDEXED_MAPS ? SliceIndexedSlicedMap.create() : SlicedMapImpl.create();
     }
 
 
@@ -129,6 +230,14 @@ public class BindingTraceContext implements BindingTrace {
         return map.getKeys(slice);
     }
 
+    /**
+     * Returns true if {@link #get} may resolve a value of the slice which isn't recorded yet.
+     * Snapshots of this trace read the missing values of such slices from the trace itself, see {@link #createSnapshot}.
+     */
+    protected boolean mayResolveOnGet(@NotNull ReadOnlySlice<?, ?> slice) {
+        return false;
+    }
+
     @Nullable
     @Override
     public KotlinType getType(@NotNull KtExpression expression) {
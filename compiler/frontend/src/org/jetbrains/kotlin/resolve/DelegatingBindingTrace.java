@@ -36,8 +36,7 @@ import java.util.List;
 import java.util.Map;
 
 public class DelegatingBindingTrace implements BindingTrace {
-    @SuppressWarnings("ConstantConditions")
-    private final MutableSlicedMap map = BindingTraceContext.TRACK_REWRITES ? new TrackingSlicedMap(BindingTraceContext.TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create();
+    private final MutableSlicedMap map;
 
     private final BindingContext parentContext;
     private final String name;
@@ -89,6 +88,16 @@ public class DelegatingBindingTrace implements BindingTrace {
     }
 
     public DelegatingBindingTrace(BindingContext parentContext, boolean withParentDiagnostics, String debugName) {
+        this(parentContext, withParentDiagnostics, debugName, BindingTraceContext.createSlicedMap());
+    }
+
+    protected DelegatingBindingTrace(
+            BindingContext parentContext,
+            boolean withParentDiagnostics,
+            String debugName,
+            @NotNull MutableSlicedMap map
+    ) {
+        this.map = map;
         this.parentContext = parentContext;
         this.name = debugName;
         this.mutableDiagnostics = withParentDiagnostics ?
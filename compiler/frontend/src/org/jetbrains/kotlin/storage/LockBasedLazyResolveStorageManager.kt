@@ -38,6 +38,9 @@ class LockBasedLazyResolveStorageManager(private val storageManager: StorageMana
     override fun createSafeTrace(originalTrace: BindingTrace): BindingTrace =
             LockProtectedTrace(storageManager, originalTrace)
 
+    fun createSafeContext(originalContext: BindingContext): BindingContext =
+            LockProtectedContext(storageManager, originalContext)
+
     private class LockProtectedContext(private val storageManager: StorageManager, private val context: BindingContext) : BindingContext {
         override fun getType(expression: KtExpression): KotlinType? = storageManager.compute { context.getType(expression) }
 
@@ -16,9 +16,16 @@
 
 package org.jetbrains.kotlin.util.slicedMap
 
+import java.util.concurrent.atomic.AtomicInteger
+
+private val sliceCounter = AtomicInteger()
+
 abstract class AbstractWritableSlice<K, V>(debugName: String) : KeyWithSlice<K, V, WritableSlice<K, V>>(debugName), WritableSlice<K, V> {
     override val slice: WritableSlice<K, V>
         get() = this
 
     override fun getKey(): AbstractWritableSlice<K, V> = this
+
+    // Slices are numbered densely in the order of creation, see SliceIndexedSlicedMap
+    val index: Int = sliceCounter.getAndIncrement()
 }
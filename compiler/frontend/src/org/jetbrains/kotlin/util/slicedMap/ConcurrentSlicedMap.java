@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import com.intellij.openapi.util.Key;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Same as {@link SlicedMapImpl}, but can be read by several threads without locking while it is modified. Modifications are serialized.
+ */
+public class ConcurrentSlicedMap implements MutableSlicedMap {
+    // ConcurrentHashMap doesn't allow null keys
+    private static final Object NULL_KEY = new Object();
+
+    private final Map<Object, UserDataHolderImpl> map = new ConcurrentHashMap<Object, UserDataHolderImpl>();
+    private Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = null;
+
+    @Override
+    public synchronized <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        UserDataHolderImpl holder = map.get(mask(key));
+        boolean newHolder = holder == null;
+        if (newHolder) {
+            holder = new UserDataHolderImpl();
+        }
+
+        Key<V> sliceKey = slice.getKey();
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (!newHolder && rewritePolicy.rewriteProcessingNeeded(key)) {
+            V oldValue = holder.getUserData(sliceKey);
+            if (oldValue != null) {
+                //noinspection unchecked
+                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) {
+                    return;
+                }
+            }
+        }
+
+        if (slice.isCollective()) {
+            if (collectiveSliceKeys == null) {
+                collectiveSliceKeys = ArrayListMultimap.create();
+            }
+
+            collectiveSliceKeys.put(slice, key);
+        }
+
+        // The holder is published only when it contains the value
+        holder.putUserData(sliceKey, value);
+        if (newHolder) {
+            map.put(mask(key), holder);
+        }
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        map.clear();
+        collectiveSliceKeys = null;
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        UserDataHolderImpl holder = map.get(mask(key));
+
+        V value = holder == null ? null : holder.getUserData(slice.getKey());
+
+        return slice.computeValue(this, key, value, value == null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        assert slice.isCollective() : "Keys are not collected for slice " + slice;
+
+        if (collectiveSliceKeys == null) return new ArrayList<K>(0);
+        return new ArrayList<K>((Collection<K>) collectiveSliceKeys.get(slice));
+    }
+
+    @Override
+    public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        for (Map.Entry<Object, UserDataHolderImpl> entry : map.entrySet()) {
+            Object key = unmask(entry.getKey());
+            UserDataHolderImpl holder = entry.getValue();
+
+            for (Key<?> sliceKey : holder.getKeys()) {
+                Object value = holder.getUserData(sliceKey);
+
+                f.invoke(((AbstractWritableSlice) sliceKey).getSlice(), key, value);
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+
+        for (Map.Entry<Object, UserDataHolderImpl> entry : map.entrySet()) {
+            V value = entry.getValue().getUserData(slice.getKey());
+
+            if (value != null) {
+                builder.put((K) unmask(entry.getKey()), value);
+            }
+        }
+        return builder.build();
+    }
+
+    @NotNull
+    private static Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static Object unmask(@NotNull Object key) {
+        return key == NULL_KEY ? null : key;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import gnu.trove.THashMap;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Keeps the values of each slice in a separate open addressing map found by the index of the slice,
+ * instead of a holder with a list of slices per key as {@link SlicedMapImpl} does.
+ * A value costs no allocations besides the growth of its slice map.
+ * <p>
+ * Most traces are short-lived and touch a few slices, so slice maps are kept in compact arrays and found by a linear search.
+ * Once more than {@link #LINEAR_SEARCH_LIMIT} slices are used, a table indexed by the slice index is built as well.
+ * <p>
+ * Unlike {@link SlicedMapImpl}, {@link #forEach} visits all values of one slice before the values of the next slice.
+ */
+public class SliceIndexedSlicedMap implements MutableSlicedMap {
+
+    public static SliceIndexedSlicedMap create() {
+        return new SliceIndexedSlicedMap();
+    }
+
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+    private static final int SLICE_MAP_INITIAL_CAPACITY = 4;
+
+    private static final int[] EMPTY_INDICES = new int[0];
+    private static final Map<?, ?>[] EMPTY_SLICE_MAPS = new Map<?, ?>[0];
+    private static final AbstractWritableSlice<?, ?>[] EMPTY_SLICES = new AbstractWritableSlice<?, ?>[0];
+
+    // The first sliceCount elements describe the used slices: sliceMaps[i] holds the values of slices[i], whose index is sliceIndices[i]
+    private int sliceCount = 0;
+    private int[] sliceIndices = EMPTY_INDICES;
+    private Map<?, ?>[] sliceMaps = EMPTY_SLICE_MAPS;
+    private AbstractWritableSlice<?, ?>[] slices = EMPTY_SLICES;
+
+    // Slice maps by AbstractWritableSlice.getIndex(), only built when there are more than LINEAR_SEARCH_LIMIT slices
+    private Map<?, ?>[] sliceMapsByIndex = null;
+
+    private Multimap<WritableSlice<?, ?>, Object> collectiveSliceKeys = null;
+
+    private static int indexOf(@NotNull ReadOnlySlice<?, ?> slice) {
+        return ((AbstractWritableSlice<?, ?>) slice.getKey()).getIndex();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> Map<K, V> getSliceMap(int index) {
+        if (sliceMapsByIndex != null) {
+            return index < sliceMapsByIndex.length ? (Map<K, V>) sliceMapsByIndex[index] : null;
+        }
+
+        for (int i = 0; i < sliceCount; i++) {
+            if (sliceIndices[i] == index) return (Map<K, V>) sliceMaps[i];
+        }
+        return null;
+    }
+
+    private <K, V> Map<K, V> getOrCreateSliceMap(@NotNull WritableSlice<K, V> slice) {
+        @SuppressWarnings("unchecked")
+        AbstractWritableSlice<K, V> sliceKey = (AbstractWritableSlice<K, V>) slice.getKey();
+        int index = sliceKey.getIndex();
+
+        Map<K, V> sliceMap = getSliceMap(index);
+        if (sliceMap != null) return sliceMap;
+
+        sliceMap = new THashMap<K, V>(SLICE_MAP_INITIAL_CAPACITY);
+
+        if (sliceCount == slices.length) {
+            int newLength = Math.max(4, sliceCount * 2);
+            sliceIndices = Arrays.copyOf(sliceIndices, newLength);
+            sliceMaps = Arrays.copyOf(sliceMaps, newLength);
+            slices = Arrays.copyOf(slices, newLength);
+        }
+        sliceIndices[sliceCount] = index;
+        sliceMaps[sliceCount] = sliceMap;
+        slices[sliceCount] = sliceKey;
+        sliceCount++;
+
+        if (sliceMapsByIndex != null) {
+            putByIndex(index, sliceMap);
+        }
+        else if (sliceCount > LINEAR_SEARCH_LIMIT) {
+            sliceMapsByIndex = EMPTY_SLICE_MAPS;
+            for (int i = 0; i < sliceCount; i++) {
+                putByIndex(sliceIndices[i], sliceMaps[i]);
+            }
+        }
+
+        return sliceMap;
+    }
+
+    private void putByIndex(int index, @NotNull Map<?, ?> sliceMap) {
+        if (index >= sliceMapsByIndex.length) {
+            sliceMapsByIndex = Arrays.copyOf(sliceMapsByIndex, Math.max(index + 1, sliceMapsByIndex.length * 3 / 2));
+        }
+        sliceMapsByIndex[index] = sliceMap;
+    }
+
+    @Override
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        Map<K, V> sliceMap = getOrCreateSliceMap(slice);
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (rewritePolicy.rewriteProcessingNeeded(key)) {
+            V oldValue = sliceMap.get(key);
+            if (oldValue != null) {
+                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) {
+                    return;
+                }
+            }
+        }
+
+        if (slice.isCollective()) {
+            if (collectiveSliceKeys == null) {
+                collectiveSliceKeys = ArrayListMultimap.create();
+            }
+
+            collectiveSliceKeys.put(slice, key);
+        }
+
+        // Storing null removes the value, as it does in SlicedMapImpl
+        if (value == null) {
+            sliceMap.remove(key);
+        }
+        else {
+            sliceMap.put(key, value);
+        }
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        sliceCount = 0;
+        sliceIndices = EMPTY_INDICES;
+        sliceMaps = EMPTY_SLICE_MAPS;
+        slices = EMPTY_SLICES;
+        sliceMapsByIndex = null;
+        collectiveSliceKeys = null;
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        Map<K, V> sliceMap = getSliceMap(indexOf(slice));
+
+        V value = sliceMap == null ? null : sliceMap.get(key);
+
+        return slice.computeValue(this, key, value, value == null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        assert slice.isCollective() : "Keys are not collected for slice " + slice;
+
+        if (collectiveSliceKeys == null) return Collections.emptyList();
+        return (Collection<K>) collectiveSliceKeys.get(slice);
+    }
+
+    @Override
+    public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        for (int i = 0; i < sliceCount; i++) {
+            Map<?, ?> sliceMap = sliceMaps[i];
+            WritableSlice slice = slices[i].getSlice();
+            for (Map.Entry<?, ?> entry : sliceMap.entrySet()) {
+                f.invoke(slice, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        Map<K, V> sliceMap = getSliceMap(indexOf(slice));
+        if (sliceMap == null) return ImmutableMap.of();
+
+        return ImmutableMap.copyOf(sliceMap);
+    }
+}
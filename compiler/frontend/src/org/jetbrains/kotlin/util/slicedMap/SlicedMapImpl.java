@@ -115,6 +115,48 @@ public class SlicedMapImpl implements MutableSlicedMap {
         }
     }
 
+    /**
+     * Returns a read-only view of the keys present in this map now. The view can be read by several threads without locking while
+     * this map is modified under some lock: holders of values are thread-safe and shared with this map, so values recorded later
+     * for these keys are read as well. Other keys, collective slice keys and iteration are delegated to {@code otherKeys}, which
+     * should take that lock.
+     * Must be called when no other thread modifies this map.
+     */
+    @NotNull
+    public SlicedMap snapshot(@NotNull SlicedMap otherKeys) {
+        return new Snapshot(new THashMap<Object, UserDataHolderImpl>(map), otherKeys);
+    }
+
+    private static class Snapshot implements SlicedMap {
+        private final Map<Object, UserDataHolderImpl> map;
+        private final SlicedMap otherKeys;
+
+        private Snapshot(@NotNull Map<Object, UserDataHolderImpl> map, @NotNull SlicedMap otherKeys) {
+            this.map = map;
+            this.otherKeys = otherKeys;
+        }
+
+        @Override
+        public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+            UserDataHolderImpl holder = map.get(key);
+            if (holder == null) return otherKeys.get(slice, key);
+
+            V value = holder.getUserData(slice.getKey());
+
+            return slice.computeValue(this, key, value, value == null);
+        }
+
+        @Override
+        public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+            return otherKeys.getKeys(slice);
+        }
+
+        @Override
+        public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+            otherKeys.forEach(f);
+        }
+    }
+
     @NotNull
     @Override
     public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
@@ -20,11 +20,12 @@ import java.io.*;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 @SuppressWarnings("unchecked")
 public class ClassPreloadingUtils {
@@ -119,59 +120,36 @@ public class ClassPreloadingUtils {
         // 0.75 is HashMap.DEFAULT_LOAD_FACTOR
         Map<String, Object> resources = new HashMap<String, Object>((int) (classNumberEstimate / 0.75));
 
-        for (File jarFile : jarFiles) {
+        // Jars are read in parallel, but the handler sees them one by one in the order of the classpath, as before
+        for (JarContents jar : readJars(jarFiles)) {
+            File jarFile = jar.jarFile;
             if (handler != null) {
                 handler.beforeLoadJar(jarFile);
             }
 
-            FileInputStream fileInputStream = new FileInputStream(jarFile);
-            try {
-                byte[] buffer = new byte[10 * 1024];
-                ZipInputStream stream = new ZipInputStream(new BufferedInputStream(fileInputStream, 1 << 19));
-                while (true) {
-                    ZipEntry entry = stream.getNextEntry();
-                    if (entry == null) break;
-                    if (entry.isDirectory()) continue;
-
-                    int size = (int) entry.getSize();
-                    int effectiveSize = size < 0 ? 32 : size;
-                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(effectiveSize);
-
-                    int count;
-                    while ((count = stream.read(buffer)) > 0) {
-                        bytes.write(buffer, 0, count);
-                    }
-
-                    String name = entry.getName();
-                    byte[] data = bytes.toByteArray();
-                    if (handler != null) {
-                        data = handler.instrument(name, data);
-                    }
-                    ResourceData resourceData = new ResourceData(jarFile, name, data);
+            for (int i = 0; i < jar.names.length; i++) {
+                String name = jar.names[i];
+                byte[] data = jar.data[i];
+                jar.data[i] = null;
+                if (handler != null) {
+                    data = handler.instrument(name, data);
+                }
+                ResourceData resourceData = new ResourceData(jarFile, name, data);
 
-                    Object previous = resources.get(name);
-                    if (previous == null) {
-                        resources.put(name, resourceData);
-                    }
-                    else if (previous instanceof ResourceData) {
-                        List<ResourceData> list = new ArrayList<ResourceData>();
-                        list.add((ResourceData) previous);
-                        list.add(resourceData);
-                        resources.put(name, list);
-                    }
-                    else {
-                        assert previous instanceof ArrayList :
-                                "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
-                        ((ArrayList<ResourceData>) previous).add(resourceData);
-                    }
+                Object previous = resources.get(name);
+                if (previous == null) {
+                    resources.put(name, resourceData);
                 }
-            }
-            finally {
-                try {
-                    fileInputStream.close();
+                else if (previous instanceof ResourceData) {
+                    List<ResourceData> list = new ArrayList<ResourceData>();
+                    list.add((ResourceData) previous);
+                    list.add(resourceData);
+                    resources.put(name, list);
                 }
-                catch (IOException e) {
-                    // Ignore
+                else {
+                    assert previous instanceof ArrayList :
+                            "Resource map should contain ResourceData or ArrayList<ResourceData>: " + name;
+                    ((ArrayList<ResourceData>) previous).add(resourceData);
                 }
             }
 
@@ -188,4 +166,153 @@ public class ClassPreloadingUtils {
 
         return resources;
     }
+
+    private static final int ENTRIES_PER_TASK = 256;
+
+    private static class JarContents {
+        final File jarFile;
+        final ZipFile zipFile;
+        final ZipEntry[] entries;
+        final String[] names;
+        final byte[][] data;
+
+        JarContents(File jarFile, ZipFile zipFile, ZipEntry[] entries) {
+            this.jarFile = jarFile;
+            this.zipFile = zipFile;
+            this.entries = entries;
+            this.names = new String[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                names[i] = entries[i].getName();
+            }
+            this.data = new byte[entries.length][];
+        }
+
+        // Entries of the same ZipFile can be inflated on several threads at once
+        void read(int from, int to) throws IOException {
+            for (int i = from; i < to; i++) {
+                ZipEntry entry = entries[i];
+                InputStream stream = zipFile.getInputStream(entry);
+                try {
+                    data[i] = readFully(stream, (int) entry.getSize());
+                }
+                finally {
+                    stream.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads entries of all jars using their central directories, which give the exact size of each entry,
+     * so that every entry is read into an array of its size without intermediate buffers.
+     */
+    private static List<JarContents> readJars(Collection<File> jarFiles) throws IOException {
+        List<JarContents> jars = new ArrayList<JarContents>(jarFiles.size());
+        try {
+            for (File jarFile : jarFiles) {
+                ZipFile zipFile = new ZipFile(jarFile);
+                List<ZipEntry> entries = new ArrayList<ZipEntry>(zipFile.size());
+                for (Enumeration<? extends ZipEntry> enumeration = zipFile.entries(); enumeration.hasMoreElements(); ) {
+                    ZipEntry entry = enumeration.nextElement();
+                    if (!entry.isDirectory()) {
+                        entries.add(entry);
+                    }
+                }
+                jars.add(new JarContents(jarFile, zipFile, entries.toArray(new ZipEntry[entries.size()])));
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final JarContents jar : jars) {
+                for (int from = 0; from < jar.names.length; from += ENTRIES_PER_TASK) {
+                    final int start = from;
+                    final int end = Math.min(from + ENTRIES_PER_TASK, jar.names.length);
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            jar.read(start, end);
+                            return null;
+                        }
+                    });
+                }
+            }
+
+            runAll(tasks);
+            return jars;
+        }
+        finally {
+            for (JarContents jar : jars) {
+                try {
+                    jar.zipFile.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static void runAll(List<Callable<Void>> tasks) throws IOException {
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), tasks.size());
+        if (threads < 2) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                }
+                catch (IOException e) {
+                    throw e;
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while reading jars");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] readFully(InputStream stream, int size) throws IOException {
+        if (size < 0) {
+            // Should not happen for entries from the central directory, but it is cheap to be safe
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = stream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        }
+
+        byte[] data = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            int count = stream.read(data, offset, size - offset);
+            if (count < 0) throw new EOFException("Unexpected end of entry, " + offset + " of " + size + " bytes read");
+            offset += count;
+        }
+        return data;
+    }
 }
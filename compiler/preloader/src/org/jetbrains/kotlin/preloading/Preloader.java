@@ -50,7 +50,9 @@ public class Preloader {
         ClassLoader classLoader = createClassLoader(options);
 
         final Handler handler = getHandler(options, classLoader);
+        final long preloadingStartTime = System.nanoTime();
         ClassLoader preloaded = ClassPreloadingUtils.preloadClasses(options.classpath, options.estimate, classLoader, null, handler);
+        final long preloadingTime = System.nanoTime() - preloadingStartTime;
 
         Class<?> mainClass = preloaded.loadClass(options.mainClass);
         Method mainMethod = mainClass.getMethod("main", String[].class);
@@ -63,6 +65,7 @@ public class Preloader {
                             System.out.println();
                             System.out.println("=== Preloader's measurements: ");
                             System.out.format("Total time: %.3fs\n", (System.nanoTime() - startTime) / 1e9);
+                            System.out.format("Preloading time: %.3fs\n", preloadingTime / 1e9);
                         }
                         handler.done();
                     }
@@ -0,0 +1,3 @@
+fun main(args: Array<String>) {
+    val unused = 1
+}
@@ -0,0 +1,14 @@
+package a
+
+import b.Color
+import b.transform
+
+inline fun <T> twice(f: () -> T): Pair<T, T> = Pair(f(), f())
+
+fun describe(color: Color): String = when (color) {
+    Color.RED -> "red"
+    Color.GREEN -> "green"
+    Color.BLUE -> "blue"
+}
+
+fun useB(): List<String> = transform(listOf(1, 2, 3)) { "#$it" }
@@ -0,0 +1,16 @@
+package b
+
+import a.twice
+
+enum class Color { RED, GREEN, BLUE }
+
+inline fun <T, R> transform(list: List<T>, f: (T) -> R): List<R> = list.map { f(it) }
+
+fun useA(): Pair<String, String> = twice { Color.values().joinToString { it.name } }
+
+class Holder(val color: Color) {
+    fun shade(): String = when (color) {
+        Color.RED -> "dark red"
+        else -> color.name.toLowerCase()
+    }
+}
@@ -0,0 +1,10 @@
+@file:JvmName("Utils")
+@file:JvmMultifileClass
+package c
+
+import a.describe
+import b.Color
+
+fun first(): String = describe(Color.RED)
+
+val lazyValue by lazy { Color.GREEN }
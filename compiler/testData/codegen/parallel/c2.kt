@@ -0,0 +1,10 @@
+@file:JvmName("Utils")
+@file:JvmMultifileClass
+package c
+
+import a.twice
+import b.transform
+
+fun second(): List<Int> = transform(listOf("a", "bb")) { it.length }
+
+fun third(): Pair<Int, Int> = twice { object : Comparable<Int> { override fun compareTo(other: Int) = other }.compareTo(42) }
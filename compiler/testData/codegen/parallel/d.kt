@@ -0,0 +1,11 @@
+package d
+
+import b.Color
+import c.first
+import c.second
+
+fun main(args: Array<String>) {
+    val callbacks = Color.values().map { color -> { "$color: ${first()}" } }
+    callbacks.forEach { println(it()) }
+    println(second())
+}
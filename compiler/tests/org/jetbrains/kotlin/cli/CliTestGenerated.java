@@ -277,6 +277,18 @@ public class CliTestGenerated extends AbstractCliTest {
             doJvmTest(fileName);
         }
 
+        @TestMetadata("wrongCodegenThreads.args")
+        public void testWrongCodegenThreads() throws Exception {
+            String fileName = KotlinTestUtils.navigationMetadata("compiler/testData/cli/jvm/wrongCodegenThreads.args");
+            doJvmTest(fileName);
+        }
+
+        @TestMetadata("wrongModuleOptions.args")
+        public void testWrongModuleOptions() throws Exception {
+            String fileName = KotlinTestUtils.navigationMetadata("compiler/testData/cli/jvm/wrongModuleOptions.args");
+            doJvmTest(fileName);
+        }
+
         @TestMetadata("wrongScriptWithNoSource.args")
         public void testWrongScriptWithNoSource() throws Exception {
             String fileName = KotlinTestUtils.navigationMetadata("compiler/testData/cli/jvm/wrongScriptWithNoSource.args");
@@ -292,6 +304,12 @@ public class CliTestGenerated extends AbstractCliTest {
             KotlinTestUtils.assertAllTestsPresentByMetadata(this.getClass(), new File("compiler/testData/cli/js"), Pattern.compile("^(.+)\\.args$"), false);
         }
 
+        @TestMetadata("buildStamp.args")
+        public void testBuildStamp() throws Exception {
+            String fileName = KotlinTestUtils.navigationMetadata("compiler/testData/cli/js/buildStamp.args");
+            doJsTest(fileName);
+        }
+
         @TestMetadata("createKjsm.args")
         public void testCreateKjsm() throws Exception {
             String fileName = KotlinTestUtils.navigationMetadata("compiler/testData/cli/js/createKjsm.args");
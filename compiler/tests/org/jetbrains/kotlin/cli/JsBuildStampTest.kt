@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli
+
+import org.jetbrains.kotlin.cli.common.ExitCode
+import org.jetbrains.kotlin.cli.js.K2JSCompiler
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+import java.io.File
+
+class JsBuildStampTest : KtUsefulTestCase() {
+    private val source = File(KotlinTestUtils.getTestDataPathBase() + "/cli/js/buildStampWarning.kt")
+
+    private fun compile(tmpdir: File, vararg extraArguments: String): String {
+        val (output, exitCode) = AbstractCliTest.executeCompilerGrabOutput(K2JSCompiler(), listOf(
+                source.path,
+                "-no-stdlib",
+                "-verbose",
+                "-output", File(tmpdir, "out.js").path,
+                "-Xbuild-stamp", File(tmpdir, "out.stamp").path
+        ) + extraArguments)
+        assertEquals(output, ExitCode.OK, exitCode)
+        return output
+    }
+
+    private fun warnings(output: String) = output.lines().filter { "warning: " in it }
+
+    fun testSkippedWithWarnings() {
+        val tmpdir = KotlinTestUtils.tmpDir(javaClass.simpleName)
+
+        val first = compile(tmpdir)
+        assertFalse(first, "is up-to-date" in first)
+        assertTrue(first, warnings(first).isNotEmpty())
+
+        val second = compile(tmpdir)
+        assertTrue(second, "is up-to-date" in second)
+        assertEquals(warnings(first), warnings(second))
+    }
+
+    fun testOptionsChanged() {
+        val tmpdir = KotlinTestUtils.tmpDir(javaClass.simpleName)
+
+        compile(tmpdir)
+        val second = compile(tmpdir, "-source-map")
+        assertFalse(second, "is up-to-date" in second)
+    }
+
+    fun testOutputRemoved() {
+        val tmpdir = KotlinTestUtils.tmpDir(javaClass.simpleName)
+
+        compile(tmpdir)
+        assertTrue(File(tmpdir, "out.js").delete())
+        val second = compile(tmpdir)
+        assertFalse(second, "is up-to-date" in second)
+        assertTrue(File(tmpdir, "out.js").exists())
+    }
+}
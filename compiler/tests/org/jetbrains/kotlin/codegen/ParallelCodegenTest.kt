@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.cli.AbstractCliTest
+import org.jetbrains.kotlin.cli.common.ExitCode
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase
+import java.io.File
+import java.util.*
+
+class ParallelCodegenTest : KtUsefulTestCase() {
+    private val sourceDirectory = File(KotlinTestUtils.getTestDataPathBase() + "/codegen/parallel")
+
+    private fun compile(arguments: List<String>) {
+        val (output, exitCode) = AbstractCliTest.executeCompilerGrabOutput(K2JVMCompiler(), arguments)
+        assertEquals(output, ExitCode.OK, exitCode)
+    }
+
+    private fun compileDirectory(vararg extraArguments: String): File {
+        val destination = KotlinTestUtils.tmpDir(javaClass.simpleName)
+        compile(listOf(sourceDirectory.path, "-d", destination.path) + extraArguments)
+        return destination
+    }
+
+    // modules don't declare dependencies on each other, so all of them are generated at the same time
+    private fun compileModules(vararg extraArguments: String): File {
+        val directory = KotlinTestUtils.tmpDir(javaClass.simpleName)
+        val destination = File(directory, "out")
+        val modules = listOf("ab" to listOf("a.kt", "b.kt"), "c" to listOf("c1.kt", "c2.kt"), "d" to listOf("d.kt"))
+
+        val moduleFile = File(directory, "modules.xml")
+        moduleFile.writeText(modules.joinToString("\n", "<modules>\n", "\n</modules>") { module ->
+            val (name, files) = module
+            "  <module name=\"$name\" outputDir=\"${File(destination, name).path}\" type=\"java-production\">\n" +
+            files.joinToString("") { "    <sources path=\"${File(sourceDirectory, it).path}\"/>\n" } +
+            "  </module>"
+        })
+
+        compile(listOf("-module", moduleFile.path) + extraArguments)
+        return destination
+    }
+
+    private fun assertSameOutput(sequential: File, parallel: File) {
+        val sequentialFiles = sequential.walk().filter { it.isFile }.map { it.toRelativeString(sequential) }.toSortedSet()
+        val parallelFiles = parallel.walk().filter { it.isFile }.map { it.toRelativeString(parallel) }.toSortedSet()
+        assertEquals(sequentialFiles, parallelFiles)
+
+        for (path in sequentialFiles) {
+            assertTrue("Different bytes in $path", Arrays.equals(File(sequential, path).readBytes(), File(parallel, path).readBytes()))
+        }
+    }
+
+    private fun doTest(threads: Int) {
+        assertSameOutput(compileDirectory(), compileDirectory("-Xcodegen-threads", threads.toString()))
+    }
+
+    fun testTwoThreads() {
+        doTest(2)
+    }
+
+    fun testMoreThreadsThanParts() {
+        doTest(16)
+    }
+
+    fun testModuleThreads() {
+        assertSameOutput(compileModules(), compileModules("-Xmodule-threads", "3"))
+    }
+}
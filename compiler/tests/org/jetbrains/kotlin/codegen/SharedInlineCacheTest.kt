@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.codegen
+
+import com.intellij.testFramework.LightVirtualFile
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
+
+class SharedInlineCacheTest : TestCase() {
+    fun testHitsAndMisses() {
+        val cache = SharedInlineCache(1024)
+        val file = LightVirtualFile("A.class", "content")
+
+        cache.getClassBytes(file)
+        cache.getClassBytes(file)
+        cache.getClassBytes(file)
+
+        val statistics = cache.statistics
+        assertEquals(2, statistics.hits)
+        assertEquals(1, statistics.misses)
+        assertEquals(0, statistics.evictions)
+        assertEquals("content".length.toLong(), statistics.bytesHeld)
+    }
+
+    fun testEvictionBySize() {
+        val cache = SharedInlineCache(10)
+        val first = LightVirtualFile("A.class", "123456")
+        val second = LightVirtualFile("B.class", "7890")
+        val third = LightVirtualFile("C.class", "xyz")
+
+        cache.getClassBytes(first)
+        cache.getClassBytes(second)
+        cache.getClassBytes(third)
+
+        val statistics = cache.statistics
+        assertEquals(1, statistics.evictions)
+        assertEquals(7, statistics.bytesHeld)
+
+        cache.getClassBytes(second)
+        assertEquals(1, cache.statistics.hits)
+    }
+
+    fun testTooLargeEntryIsNotCached() {
+        val cache = SharedInlineCache(2)
+        cache.getClassBytes(LightVirtualFile("A.class", "content"))
+
+        assertEquals(0, cache.statistics.bytesHeld)
+    }
+}
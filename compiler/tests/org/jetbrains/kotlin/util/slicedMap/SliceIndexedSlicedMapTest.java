@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+import kotlin.jvm.functions.Function3;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SliceIndexedSlicedMapTest extends TestCase {
+    private final List<MutableSlicedMap> maps = new ArrayList<MutableSlicedMap>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        maps.add(SlicedMapImpl.create());
+        maps.add(SliceIndexedSlicedMap.create());
+        maps.add(new ConcurrentSlicedMap());
+    }
+
+    private static <V> BasicWritableSlice<String, V> slice(String debugName, RewritePolicy rewritePolicy, boolean isCollective) {
+        BasicWritableSlice<String, V> slice = new BasicWritableSlice<String, V>(rewritePolicy, isCollective) {
+            @Override
+            public boolean check(String key, V value) {
+                // null values are allowed, they remove the stored value
+                return true;
+            }
+        };
+        slice.setDebugName(debugName);
+        return slice;
+    }
+
+    private <V> void put(WritableSlice<String, V> slice, String key, V value) {
+        for (MutableSlicedMap map : maps) {
+            map.put(slice, key, value);
+        }
+    }
+
+    private <V> void assertSameValue(ReadOnlySlice<String, V> slice, String key) {
+        for (MutableSlicedMap map : maps) {
+            assertEquals(maps.get(0).get(slice, key), map.get(slice, key));
+        }
+    }
+
+    private <V> void assertSameContents(WritableSlice<String, V> slice) {
+        for (MutableSlicedMap map : maps) {
+            assertEquals(maps.get(0).getSliceContents(slice), map.getSliceContents(slice));
+            if (slice.isCollective()) {
+                assertEquals(new ArrayList<String>(maps.get(0).getKeys(slice)), new ArrayList<String>(map.getKeys(slice)));
+            }
+        }
+    }
+
+    private void assertSameValues() {
+        for (MutableSlicedMap map : maps) {
+            assertEquals(allValues(maps.get(0)), allValues(map));
+        }
+    }
+
+    private static Set<String> allValues(MutableSlicedMap map) {
+        final Set<String> result = new HashSet<String>();
+        map.forEach(new Function3<WritableSlice, Object, Object, Void>() {
+            @Override
+            public Void invoke(WritableSlice slice, Object key, Object value) {
+                result.add(slice + ": " + key + " = " + value);
+                return null;
+            }
+        });
+        return result;
+    }
+
+    public void testPutAndGet() {
+        WritableSlice<String, Integer> numbers = slice("NUMBERS", RewritePolicy.DO_NOTHING, false);
+        WritableSlice<String, String> names = slice("NAMES", RewritePolicy.DO_NOTHING, false);
+
+        put(numbers, "a", 1);
+        put(numbers, "b", 2);
+        put(names, "a", "first");
+
+        assertEquals(1, (int) maps.get(1).get(numbers, "a"));
+        assertEquals("first", maps.get(1).get(names, "a"));
+        for (String key : new String[] {"a", "b", "c"}) {
+            assertSameValue(numbers, key);
+            assertSameValue(names, key);
+        }
+        assertSameContents(numbers);
+        assertSameContents(names);
+        assertSameValues();
+    }
+
+    public void testRewriteAndNullRemoval() {
+        WritableSlice<String, Integer> numbers = slice("NUMBERS", RewritePolicy.DO_NOTHING, false);
+        WritableSlice<String, Integer> checked = slice("CHECKED", Slices.ONLY_REWRITE_TO_EQUAL, false);
+
+        put(numbers, "a", 1);
+        put(numbers, "a", 2);
+        put(checked, "a", 3);
+        put(checked, "a", 3);
+        put(numbers, "b", 4);
+        put(numbers, "b", null);
+
+        assertEquals(2, (int) maps.get(1).get(numbers, "a"));
+        assertNull(maps.get(1).get(numbers, "b"));
+        assertSameValue(numbers, "a");
+        assertSameValue(numbers, "b");
+        assertSameValue(checked, "a");
+        assertSameContents(numbers);
+        assertSameContents(checked);
+        assertSameValues();
+    }
+
+    public void testCollectiveSliceKeys() {
+        WritableSlice<String, Integer> collective = slice("COLLECTIVE", RewritePolicy.DO_NOTHING, true);
+
+        put(collective, "b", 1);
+        put(collective, "a", 2);
+        put(collective, "b", 3);
+
+        assertSameContents(collective);
+        assertSameValues();
+    }
+
+    public void testManySlices() {
+        // More slices than are searched linearly
+        List<WritableSlice<String, Integer>> slices = new ArrayList<WritableSlice<String, Integer>>();
+        for (int i = 0; i < 20; i++) {
+            slices.add(SliceIndexedSlicedMapTest.<Integer>slice("SLICE" + i, RewritePolicy.DO_NOTHING, i % 3 == 0));
+        }
+
+        for (int i = 0; i < slices.size(); i++) {
+            put(slices.get(i), "key" + i, i);
+            put(slices.get(i), "shared", -i);
+        }
+
+        for (int i = 0; i < slices.size(); i++) {
+            assertEquals(i, (int) maps.get(1).get(slices.get(i), "key" + i));
+            assertSameValue(slices.get(i), "key" + i);
+            assertSameValue(slices.get(i), "shared");
+            assertSameValue(slices.get(i), "missing");
+            assertSameContents(slices.get(i));
+        }
+        assertSameValues();
+
+        for (MutableSlicedMap map : maps) {
+            map.clear();
+        }
+        for (MutableSlicedMap map : maps) {
+            assertTrue(allValues(map).isEmpty());
+            assertNull(map.get(slices.get(0), "key0"));
+        }
+    }
+}
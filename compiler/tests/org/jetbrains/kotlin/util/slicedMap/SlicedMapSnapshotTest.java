@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class SlicedMapSnapshotTest extends TestCase {
+    private final WritableSlice<String, Integer> numbers = Slices.createSimpleSlice();
+    private final WritableSlice<String, String> names = Slices.createSimpleSlice();
+
+    private final SlicedMapImpl map = SlicedMapImpl.create();
+
+    // records the keys which were not found in the snapshot
+    private final List<String> otherKeysRequests = new ArrayList<String>();
+
+    private final SlicedMap otherKeys = new SlicedMap() {
+        @Override
+        public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+            otherKeysRequests.add((String) key);
+            return map.get(slice, key);
+        }
+
+        @Override
+        public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+            return map.getKeys(slice);
+        }
+
+        @Override
+        public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+            map.forEach(f);
+        }
+    };
+
+    public void testValuesRecordedBeforeSnapshot() {
+        map.put(numbers, "a", 1);
+        map.put(names, "a", "first");
+
+        SlicedMap snapshot = map.snapshot(otherKeys);
+
+        assertEquals(1, (int) snapshot.get(numbers, "a"));
+        assertEquals("first", snapshot.get(names, "a"));
+        assertTrue(otherKeysRequests.isEmpty());
+    }
+
+    public void testValuesRecordedAfterSnapshot() {
+        map.put(numbers, "a", 1);
+
+        SlicedMap snapshot = map.snapshot(otherKeys);
+        map.put(names, "a", "first");
+        map.put(numbers, "b", 2);
+
+        // known key, the holder is shared with the map
+        assertEquals("first", snapshot.get(names, "a"));
+        assertTrue(otherKeysRequests.isEmpty());
+
+        // new key
+        assertEquals(2, (int) snapshot.get(numbers, "b"));
+        assertEquals(1, otherKeysRequests.size());
+
+        assertNull(snapshot.get(numbers, "c"));
+        assertEquals(2, otherKeysRequests.size());
+    }
+}
@@ -30,7 +30,7 @@ import java.util.*
 
 class ModuleDescriptorImpl @JvmOverloads constructor(
         moduleName: Name,
-        private val storageManager: StorageManager,
+        val storageManager: StorageManager,
         private val moduleParameters: ModuleParameters,
         override val builtIns: KotlinBuiltIns,
         private val capabilities: Map<ModuleDescriptor.Capability<*>, Any?> = emptyMap()
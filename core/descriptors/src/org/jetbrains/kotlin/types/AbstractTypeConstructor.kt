@@ -18,6 +18,8 @@ package org.jetbrains.kotlin.types
 
 import org.jetbrains.kotlin.descriptors.SupertypeLoopChecker
 import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.types.checker.SupertypeGraph
+import org.jetbrains.kotlin.types.checker.TypeCheckerMemo
 
 abstract class AbstractTypeConstructor(private val storageManager: StorageManager) : TypeConstructor {
     override fun getSupertypes() = supertypes().supertypesWithoutCycles
@@ -29,28 +31,57 @@ abstract class AbstractTypeConstructor(private val storageManager: StorageManage
             val allSupertypes: Collection<KotlinType>) {
             // initializer is only needed as a stub for case when 'getSupertypes' is called while 'supertypes' are being calculated
             var supertypesWithoutCycles: List<KotlinType> = (allSupertypes as? List<KotlinType>) ?: allSupertypes.toList()
+
+            @Volatile var loopsDisconnected = false
     }
 
     private val supertypes = storageManager.createLazyValueWithPostCompute(
-            { Supertypes(computeSupertypes()) },
+            {
+                // Finished at the end of post-compute, when the supertypes are final
+                TypeCheckerMemo.supertypesComputationStarted()
+                try {
+                    Supertypes(computeSupertypes())
+                }
+                catch (e: Throwable) {
+                    TypeCheckerMemo.supertypesComputationFinished()
+                    throw e
+                }
+            },
             { Supertypes(listOf(ERROR_TYPE)) },
             { supertypes ->
-                // It's important that loops disconnection begins in post-compute phase, because it guarantees that
-                // when we start calculation supertypes of supertypes (for computing neighbours), they start their disconnection loop process
-                // either, and as we want to report diagnostic about loops on all declarations they should see consistent version of 'allSupertypes'
-                var resultWithoutCycles =
-                        supertypeLoopChecker.findLoopsInSupertypesAndDisconnect(
-                            this, supertypes.allSupertypes,
-                            { it.computeNeighbours() },
-                            { reportSupertypeLoopError(it) })
-
-                if (resultWithoutCycles.isEmpty()) {
-                    resultWithoutCycles = defaultSupertypeIfEmpty()?.let { listOf(it) }.orEmpty()
+                try {
+                    disconnectLoops(supertypes)
+                }
+                finally {
+                    TypeCheckerMemo.supertypesComputationFinished()
                 }
-
-                supertypes.supertypesWithoutCycles = (resultWithoutCycles as? List<KotlinType>) ?: resultWithoutCycles.toList()
             })
 
+    private fun disconnectLoops(supertypes: Supertypes) {
+        // It's important that loops disconnection begins in post-compute phase, because it guarantees that
+        // when we start calculation supertypes of supertypes (for computing neighbours), they start their disconnection loop process
+        // either, and as we want to report diagnostic about loops on all declarations they should see consistent version of 'allSupertypes'
+        var resultWithoutCycles =
+                supertypeLoopChecker.findLoopsInSupertypesAndDisconnect(
+                    this, supertypes.allSupertypes,
+                    { it.computeNeighbours() },
+                    { reportSupertypeLoopError(it) })
+
+        if (resultWithoutCycles.isEmpty()) {
+            resultWithoutCycles = defaultSupertypeIfEmpty()?.let { listOf(it) }.orEmpty()
+        }
+
+        supertypes.supertypesWithoutCycles = (resultWithoutCycles as? List<KotlinType>) ?: resultWithoutCycles.toList()
+        supertypes.loopsDisconnected = true
+    }
+
+    // True when 'getSupertypes' returns the final list, which is never going to change
+    internal val areSupertypesFinal: Boolean
+        get() = supertypes.isComputed() && supertypes().loopsDisconnected
+
+    // See findCorrespondingSupertype
+    @Volatile internal var supertypeGraph: SupertypeGraph? = null
+
     protected abstract fun computeSupertypes(): Collection<KotlinType>
     protected abstract val supertypeLoopChecker: SupertypeLoopChecker
     protected open fun reportSupertypeLoopError(type: KotlinType) {}
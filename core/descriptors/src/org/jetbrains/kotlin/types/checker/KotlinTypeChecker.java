@@ -26,7 +26,7 @@ public class KotlinTypeChecker {
         boolean equals(@NotNull TypeConstructor a, @NotNull TypeConstructor b);
     }
 
-    public static final KotlinTypeChecker DEFAULT = new KotlinTypeChecker(new TypeCheckingProcedure(new TypeCheckerProcedureCallbacksImpl()));
+    public static final KotlinTypeChecker DEFAULT = new KotlinTypeChecker(new TypeCheckingProcedure(new TypeCheckerProcedureCallbacksImpl()), true);
 
     public static final KotlinTypeChecker ERROR_TYPES_ARE_EQUAL_TO_ANYTHING = new KotlinTypeChecker(new TypeCheckingProcedure(new TypeCheckerProcedureCallbacksImpl() {
         @Override
@@ -53,16 +53,26 @@ public class KotlinTypeChecker {
     }
 
     private final TypeCheckingProcedure procedure;
+    private final boolean memoize;
 
     private KotlinTypeChecker(@NotNull TypeCheckingProcedure procedure) {
+        this(procedure, false);
+    }
+
+    private KotlinTypeChecker(@NotNull TypeCheckingProcedure procedure, boolean memoize) {
         this.procedure = procedure;
+        this.memoize = memoize && TypeCheckerMemo.isEnabled();
     }
 
     public boolean isSubtypeOf(@NotNull KotlinType subtype, @NotNull KotlinType supertype) {
+        TypeCheckerMemo memo = memoize ? TypeCheckerMemo.current() : null;
+        if (memo != null) return memo.isSubtypeOf(subtype, supertype, procedure);
         return procedure.isSubtypeOf(subtype, supertype);
     }
 
     public boolean equalTypes(@NotNull KotlinType a, @NotNull KotlinType b) {
+        TypeCheckerMemo memo = memoize ? TypeCheckerMemo.current() : null;
+        if (memo != null) return memo.equalTypes(a, b, procedure);
         return procedure.equalTypes(a, b);
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.types.checker
+
+import org.jetbrains.kotlin.resolve.calls.inference.isCaptured
+import org.jetbrains.kotlin.types.KotlinType
+import org.jetbrains.kotlin.types.TypeUtils
+import java.util.*
+
+/**
+ * Results of subtype and equality checks made by [KotlinTypeChecker.DEFAULT] in one compilation, keyed by identity of the checked types.
+ *
+ * Disabled unless the "kotlin.type.checker.memo.size" system property sets the maximal number of entries in a table.
+ * A memo is created for a thread by [startSession] and dropped by [endSession], so that compilations running in different threads
+ * (e.g. in the daemon) never share results, and types of a finished compilation are not retained. A table is emptied when it grows
+ * over the maximal size.
+ *
+ * Only checks of types without error or captured types are memoized, since a check involving them depends on the context it is made in.
+ * Nothing is memoized while supertypes of some type constructor are being computed by the thread, since a check made at that moment
+ * may see a list of supertypes which is not final yet. Both conditions only change in one direction, so a memoized result is
+ * returned without checking them again.
+ */
+class TypeCheckerMemo private constructor(private val maxSize: Int) {
+    private val subtypeResults = HashMap<TypePair, Boolean>()
+    private val equalityResults = HashMap<TypePair, Boolean>()
+
+    private var hits = 0L
+    private var misses = 0L
+
+    // The number of supertypes computations in progress in the thread of this memo
+    private var supertypesComputations = 0
+
+    fun isSubtypeOf(subtype: KotlinType, supertype: KotlinType, procedure: TypeCheckingProcedure): Boolean =
+            memoize(subtypeResults, subtype, supertype) { procedure.isSubtypeOf(subtype, supertype) }
+
+    fun equalTypes(a: KotlinType, b: KotlinType, procedure: TypeCheckingProcedure): Boolean =
+            memoize(equalityResults, a, b) { procedure.equalTypes(a, b) }
+
+    fun report(): String {
+        val total = hits + misses
+        val hitRate = if (total == 0L) 0 else hits * 100 / total
+        return "Type checker memo: $hits hits of $total checks ($hitRate%)"
+    }
+
+    private inline fun memoize(results: MutableMap<TypePair, Boolean>, a: KotlinType, b: KotlinType, check: () -> Boolean): Boolean {
+        val key = TypePair(a, b)
+        val memoized = results[key]
+        if (memoized != null) {
+            hits++
+            return memoized
+        }
+
+        misses++
+        val memoizable = supertypesComputations == 0 && isMemoizable(a) && isMemoizable(b)
+        val result = check()
+        if (memoizable) {
+            if (results.size >= maxSize) {
+                results.clear()
+            }
+            results[key] = result
+        }
+        return result
+    }
+
+    private fun isMemoizable(type: KotlinType): Boolean =
+            !TypeUtils.contains(type) { it.isError || it.isCaptured() }
+
+    private class TypePair(val a: KotlinType, val b: KotlinType) {
+        override fun equals(other: Any?): Boolean = other is TypePair && a === other.a && b === other.b
+
+        override fun hashCode(): Int = System.identityHashCode(a) * 31 + System.identityHashCode(b)
+    }
+
+    companion object {
+        private val maxSize = Integer.getInteger("kotlin.type.checker.memo.size", 0)
+
+        private val current = ThreadLocal<TypeCheckerMemo?>()
+
+        @JvmStatic
+        val isEnabled: Boolean
+            get() = maxSize > 0
+
+        @JvmStatic
+        fun current(): TypeCheckerMemo? = current.get()
+
+        /**
+         * Sets up a new memo for the current thread if memoization is enabled
+         * @return the memo to be restored by [endSession]
+         */
+        @JvmStatic
+        fun startSession(): TypeCheckerMemo? {
+            val previous = current.get()
+            if (isEnabled) {
+                current.set(TypeCheckerMemo(maxSize))
+            }
+            return previous
+        }
+
+        @JvmStatic
+        fun endSession(previous: TypeCheckerMemo?) {
+            if (previous != null) {
+                current.set(previous)
+            }
+            else {
+                current.remove()
+            }
+        }
+
+        internal fun supertypesComputationStarted() {
+            if (isEnabled) {
+                current.get()?.let { it.supertypesComputations++ }
+            }
+        }
+
+        internal fun supertypesComputationFinished() {
+            if (isEnabled) {
+                current.get()?.let { it.supertypesComputations-- }
+            }
+        }
+    }
+}
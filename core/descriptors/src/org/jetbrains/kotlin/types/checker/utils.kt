@@ -17,7 +17,9 @@
 package org.jetbrains.kotlin.types.checker
 
 import org.jetbrains.kotlin.resolve.calls.inference.wrapWithCapturingSubstitution
+import org.jetbrains.kotlin.types.AbstractTypeConstructor
 import org.jetbrains.kotlin.types.KotlinType
+import org.jetbrains.kotlin.types.TypeConstructor
 import org.jetbrains.kotlin.types.TypeConstructorSubstitution
 import org.jetbrains.kotlin.types.TypeUtils
 import org.jetbrains.kotlin.types.Variance
@@ -26,49 +28,106 @@ import java.util.*
 
 private class SubtypePathNode(val type: KotlinType, val previous: SubtypePathNode?)
 
+/**
+ * Supertypes of a type constructor in the order of breadth-first search, each constructor taken once, together with the
+ * index of the supertype in which it has been found. The node with index 0 stands for the constructor itself.
+ *
+ * Other paths to an already visited constructor are skipped: the search would have matched the constructor at its first
+ * occurrence, and its supertypes are the same.
+ */
+internal class SupertypeGraph private constructor(private val types: Array<KotlinType?>, private val parents: IntArray) {
+    fun findCorrespondingSupertype(
+            subtype: KotlinType, supertypeConstructor: TypeConstructor,
+            typeCheckingProcedureCallbacks: TypeCheckingProcedureCallbacks
+    ): KotlinType? {
+        for (index in 1..types.size - 1) {
+            val type = types[index]!!
+            if (!typeCheckingProcedureCallbacks.assertEqualTypeConstructors(type.constructor, supertypeConstructor)) continue
+
+            val path = ArrayList<KotlinType>()
+            var current = parents[index]
+            while (current != 0) {
+                path.add(types[current]!!)
+                current = parents[current]
+            }
+            path.add(subtype)
+
+            return substituteAlongPath(type, path)
+        }
+
+        return null
+    }
+
+    companion object {
+        // Marks constructors with supertypes which are not built from AbstractTypeConstructor, e.g. error types
+        val UNSUPPORTED = SupertypeGraph(emptyArray(), IntArray(0))
+
+        // Returns null if supertypes of some constructor in the hierarchy are not known yet
+        fun build(root: AbstractTypeConstructor): SupertypeGraph? {
+            // The subtype being checked takes the place of the root node, which only has its constructor
+            val types = arrayListOf<KotlinType?>(null)
+            val parents = arrayListOf(-1)
+            val visited = Collections.newSetFromMap(IdentityHashMap<TypeConstructor, Boolean>())
+            visited.add(root)
+
+            var index = 0
+            while (index < types.size) {
+                val constructor = types[index]?.constructor ?: root
+                if (constructor !is AbstractTypeConstructor) return UNSUPPORTED
+                if (!constructor.areSupertypesFinal) return null
+
+                for (immediateSupertype in constructor.supertypes) {
+                    if (visited.add(immediateSupertype.constructor)) {
+                        types.add(immediateSupertype)
+                        parents.add(index)
+                    }
+                }
+                index++
+            }
+
+            return SupertypeGraph(types.toTypedArray(), parents.toIntArray())
+        }
+    }
+}
+
 fun findCorrespondingSupertype(
         subtype: KotlinType, supertype: KotlinType,
         typeCheckingProcedureCallbacks: TypeCheckingProcedureCallbacks
 ): KotlinType? {
+    val supertypeConstructor = supertype.constructor
+    val constructor = subtype.constructor
+
+    if (typeCheckingProcedureCallbacks.assertEqualTypeConstructors(constructor, supertypeConstructor)) {
+        return substituteAlongPath(subtype, emptyList())
+    }
+
+    // The graph of supertypes is the same for all types with this constructor, so it is built once and then only scanned
+    if (constructor is AbstractTypeConstructor) {
+        val supertypeGraph = constructor.supertypeGraph ?: SupertypeGraph.build(constructor)?.apply { constructor.supertypeGraph = this }
+        if (supertypeGraph != null && supertypeGraph !== SupertypeGraph.UNSUPPORTED) {
+            return supertypeGraph.findCorrespondingSupertype(subtype, supertypeConstructor, typeCheckingProcedureCallbacks)
+        }
+    }
+
     val queue = ArrayDeque<SubtypePathNode>()
     queue.add(SubtypePathNode(subtype, null))
 
-    val supertypeConstructor = supertype.constructor
-
     while (!queue.isEmpty()) {
         val lastPathNode = queue.poll()
         val currentSubtype = lastPathNode.type
-        val constructor = currentSubtype.constructor
-
-        if (typeCheckingProcedureCallbacks.assertEqualTypeConstructors(constructor, supertypeConstructor)) {
-            var substituted = currentSubtype
-            var isAnyMarkedNullable = currentSubtype.isMarkedNullable
 
+        if (typeCheckingProcedureCallbacks.assertEqualTypeConstructors(currentSubtype.constructor, supertypeConstructor)) {
+            val path = ArrayList<KotlinType>()
             var currentPathNode = lastPathNode.previous
-
             while (currentPathNode != null) {
-                val currentType = currentPathNode.type
-                if (currentType.arguments.any { it.projectionKind != Variance.INVARIANT }) {
-                    substituted = TypeConstructorSubstitution.create(currentType)
-                                        .wrapWithCapturingSubstitution().buildSubstitutor()
-                                        .safeSubstitute(substituted, Variance.INVARIANT)
-                                        .approximate()
-                }
-                else {
-                    substituted = TypeConstructorSubstitution.create(currentType)
-                                        .buildSubstitutor()
-                                        .safeSubstitute(substituted, Variance.INVARIANT)
-                }
-
-                isAnyMarkedNullable = isAnyMarkedNullable || currentType.isMarkedNullable
-
+                path.add(currentPathNode.type)
                 currentPathNode = currentPathNode.previous
             }
 
-            return TypeUtils.makeNullableAsSpecified(substituted, isAnyMarkedNullable)
+            return substituteAlongPath(currentSubtype, path)
         }
 
-        for (immediateSupertype in constructor.supertypes) {
+        for (immediateSupertype in currentSubtype.constructor.supertypes) {
             queue.add(SubtypePathNode(immediateSupertype, lastPathNode))
         }
     }
@@ -76,4 +135,28 @@ fun findCorrespondingSupertype(
     return null
 }
 
+// Substitutes the arguments of each type of the path, starting from the closest one, into the found supertype
+private fun substituteAlongPath(foundSupertype: KotlinType, path: List<KotlinType>): KotlinType {
+    var substituted = foundSupertype
+    var isAnyMarkedNullable = foundSupertype.isMarkedNullable
+
+    for (currentType in path) {
+        if (currentType.arguments.any { it.projectionKind != Variance.INVARIANT }) {
+            substituted = TypeConstructorSubstitution.create(currentType)
+                                .wrapWithCapturingSubstitution().buildSubstitutor()
+                                .safeSubstitute(substituted, Variance.INVARIANT)
+                                .approximate()
+        }
+        else {
+            substituted = TypeConstructorSubstitution.create(currentType)
+                                .buildSubstitutor()
+                                .safeSubstitute(substituted, Variance.INVARIANT)
+        }
+
+        isAnyMarkedNullable = isAnyMarkedNullable || currentType.isMarkedNullable
+    }
+
+    return TypeUtils.makeNullableAsSpecified(substituted, isAnyMarkedNullable)
+}
+
 private fun KotlinType.approximate() = approximateCapturedTypes(this).upper
@@ -60,7 +60,7 @@ internal abstract class FunctionCaller<out M : Member>(
     ) {
         override fun call(args: Array<*>): Any? {
             checkArguments(args)
-            return member.newInstance(*args)
+            return ReflectInvocations.newInstance(member, args)
         }
     }
 
@@ -78,7 +78,7 @@ internal abstract class FunctionCaller<out M : Member>(
         private val isVoidMethod = returnType == Void.TYPE
 
         protected fun callMethod(instance: Any?, args: Array<*>): Any? {
-            val result = member.invoke(instance, *args)
+            val result = ReflectInvocations.invoke(member, instance, args)
 
             // If this is a Unit function, the method returns void, Method#invoke returns null, while we should return Unit
             return if (isVoidMethod) Unit else result
@@ -95,7 +95,7 @@ internal abstract class FunctionCaller<out M : Member>(
     class InstanceMethod(method: ReflectMethod) : Method(method) {
         override fun call(args: Array<*>): Any? {
             checkArguments(args)
-            return callMethod(args[0], args.asList().subList(1, args.size).toTypedArray())
+            return callMethod(args[0], ReflectInvocations.dropFirst(args))
         }
     }
 
@@ -103,7 +103,7 @@ internal abstract class FunctionCaller<out M : Member>(
         override fun call(args: Array<*>): Any? {
             checkArguments(args)
             checkObjectInstance(args.firstOrNull())
-            return callMethod(null, args.asList().subList(1, args.size).toTypedArray())
+            return callMethod(null, ReflectInvocations.dropFirst(args))
         }
     }
 
@@ -67,57 +67,95 @@ internal interface KCallableImpl<out R> : KCallable<R>, KAnnotatedElementImpl {
         return caller.call(args) as R
     }
 
+    // Parameters of the callable precomputed for callBy, overridden with a cached value where default arguments are possible
+    val callByPlan: CallByPlan
+        get() = CallByPlan(this)
+
     // See ArgumentGenerator#generate
     override fun callBy(args: Map<KParameter, Any?>): R {
-        val parameters = parameters
-        val arguments = ArrayList<Any?>(parameters.size)
-        var mask = 0
-        val masks = ArrayList<Int>(1)
-        var index = 0
-
-        for (parameter in parameters) {
-            if (index != 0 && index % Integer.SIZE == 0) {
-                masks.add(mask)
-                mask = 0
-            }
-
+        val plan = callByPlan
+        val parameters = plan.parameters
+        val size = parameters.size
+        val arguments = arrayOfNulls<Any?>(size)
+        var masks: IntArray? = null
+
+        for (i in 0..size - 1) {
+            val parameter = parameters[i]
+            val argument = args[parameter]
             when {
-                args.containsKey(parameter) -> {
-                    arguments.add(args[parameter])
+                argument != null || args.containsKey(parameter) -> {
+                    arguments[i] = argument
                 }
-                parameter.isOptional -> {
-                    arguments.add(defaultPrimitiveValue(parameter.type.javaType))
-                    mask = mask or (1 shl (index % Integer.SIZE))
+                plan.isOptional(i) -> {
+                    arguments[i] = plan.defaultValue(i)
+                    if (masks == null) {
+                        masks = IntArray(plan.masksCount)
+                    }
+                    val bit = plan.maskBit(i)
+                    masks[bit / Integer.SIZE] = masks[bit / Integer.SIZE] or (1 shl (bit % Integer.SIZE))
                 }
                 else -> {
                     throw IllegalArgumentException("No argument provided for a required parameter: $parameter")
                 }
             }
+        }
 
-            if (parameter.kind == KParameter.Kind.VALUE) {
-                index++
+        if (masks == null) {
+            @Suppress("UNCHECKED_CAST")
+            return reflectionCall {
+                caller.call(arguments) as R
             }
         }
 
-        if (mask == 0 && masks.isEmpty()) {
-            return call(*arguments.toTypedArray())
+        val caller = defaultCaller ?: throw KotlinReflectionInternalError("This callable does not support a default call: $descriptor")
+
+        // Masks are followed by DefaultConstructorMarker or MethodHandle, which is null
+        val defaultArguments = arrayOfNulls<Any?>(size + masks.size + 1)
+        System.arraycopy(arguments, 0, defaultArguments, 0, size)
+        for (i in masks.indices) {
+            defaultArguments[size + i] = masks[i]
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        return reflectionCall {
+            caller.call(defaultArguments) as R
         }
+    }
+}
 
-        masks.add(mask)
+internal class CallByPlan(callable: KCallableImpl<*>) {
+    val parameters: List<KParameter> = callable.parameters
 
-        val caller = defaultCaller ?: throw KotlinReflectionInternalError("This callable does not support a default call: $descriptor")
+    private val optional = BooleanArray(parameters.size)
 
-        arguments.addAll(masks)
+    private val defaultValues = arrayOfNulls<Any?>(parameters.size)
 
-        // DefaultConstructorMarker or MethodHandle
-        arguments.add(null)
+    // Number of the bit in the masks passed to the $default method, which is the index of the value parameter
+    private val maskBits = IntArray(parameters.size)
 
-        @Suppress("UNCHECKED_CAST")
-        return reflectionCall {
-            caller.call(arguments.toTypedArray()) as R
+    val masksCount: Int
+
+    init {
+        var index = 0
+        for ((i, parameter) in parameters.withIndex()) {
+            maskBits[i] = index
+            if (parameter.isOptional) {
+                optional[i] = true
+                defaultValues[i] = defaultPrimitiveValue(parameter.type.javaType)
+            }
+            if (parameter.kind == KParameter.Kind.VALUE) {
+                index++
+            }
         }
+        masksCount = (Math.max(index, 1) + Integer.SIZE - 1) / Integer.SIZE
     }
 
+    fun isOptional(index: Int): Boolean = optional[index]
+
+    fun defaultValue(index: Int): Any? = defaultValues[index]
+
+    fun maskBit(index: Int): Int = maskBits[index]
+
     private fun defaultPrimitiveValue(type: Type): Any? =
             if (type is Class<*> && type.isPrimitive) {
                 when (type) {
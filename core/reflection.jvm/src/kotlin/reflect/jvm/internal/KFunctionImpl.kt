@@ -98,6 +98,10 @@ internal open class KFunctionImpl protected constructor(
         }
     }
 
+    override val callByPlan: CallByPlan by ReflectProperties.lazySoft {
+        CallByPlan(this)
+    }
+
     override fun getArity(): Int {
         return descriptor.valueParameters.size +
                (if (descriptor.dispatchReceiverParameter != null) 1 else 0) +
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kotlin.reflect.jvm.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+// Passing an array to a vararg parameter from Kotlin copies it, which is noticeable on hot reflective calls.
+// These methods pass the arguments array to Java reflection as is
+/* package */ class ReflectInvocations {
+    public static final Object[] EMPTY_ARGUMENTS = new Object[0];
+
+    private ReflectInvocations() {
+    }
+
+    @Nullable
+    public static Object invoke(@NotNull Method method, @Nullable Object instance, @NotNull Object[] args)
+            throws IllegalAccessException, InvocationTargetException {
+        return method.invoke(instance, args);
+    }
+
+    @NotNull
+    public static Object newInstance(@NotNull Constructor<?> constructor, @NotNull Object[] args)
+            throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        return constructor.newInstance(args);
+    }
+
+    // Returns the arguments without the first one, which is the instance or the object receiver
+    @NotNull
+    public static Object[] dropFirst(@NotNull Object[] args) {
+        if (args.length == 1) return EMPTY_ARGUMENTS;
+        Object[] result = new Object[args.length - 1];
+        System.arraycopy(args, 1, result, 0, result.length);
+        return result;
+    }
+}
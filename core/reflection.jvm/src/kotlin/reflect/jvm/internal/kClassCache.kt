@@ -16,21 +16,25 @@
 
 package kotlin.reflect.jvm.internal
 
+import java.lang.ref.ReferenceQueue
 import java.lang.ref.WeakReference
-import kotlin.reflect.jvm.internal.pcollections.HashPMap
+import java.util.concurrent.ConcurrentHashMap
 
-// TODO: collect nulls periodically
-// Key of the map is Class.getName(), each value is either a WeakReference<KClassImpl<*>> or an Array<WeakReference<KClassImpl<*>>>.
+// Key of the map is Class.getName(), each value is either a KClassReference or an Array<KClassReference>.
 // Arrays are needed because the same class can be loaded by different class loaders, which results in different Class instances.
-// This variable is not volatile intentionally: we don't care if there's a data race on it and some KClass instances will be lost.
-// We do care however about general performance on read access to it, thus no synchronization is done here whatsoever
-private var K_CLASS_CACHE = HashPMap.empty<String, Any>()
+// Reads are lock-free, which is what matters here; stale references are removed from the map as they are enqueued by the GC,
+// so that entries of classes loaded by discarded class loaders do not accumulate in a long-running application
+private val K_CLASS_CACHE = ConcurrentHashMap<String, Any>()
+
+private val K_CLASS_QUEUE = ReferenceQueue<KClassImpl<*>>()
+
+private class KClassReference(kClass: KClassImpl<*>, val name: String) : WeakReference<KClassImpl<*>>(kClass, K_CLASS_QUEUE)
 
 // This function is invoked on each reflection access to Java classes, properties, etc. Performance is critical here.
 internal fun <T : Any> getOrCreateKotlinClass(jClass: Class<T>): KClassImpl<T> {
     val name = jClass.name
     val cached = K_CLASS_CACHE[name]
-    if (cached is WeakReference<*>) {
+    if (cached is KClassReference) {
         @Suppress("UNCHECKED_CAST")
         val kClass = cached.get() as KClassImpl<T>?
         if (kClass?.jClass == jClass) {
@@ -38,30 +42,72 @@ internal fun <T : Any> getOrCreateKotlinClass(jClass: Class<T>): KClassImpl<T> {
         }
     }
     else if (cached != null) {
-        // If the cached value is not a weak reference, it's an array of weak references
-        @Suppress("UNCHECKED_CAST")
-        (cached as Array<WeakReference<KClassImpl<T>>>)
-        for (ref in cached) {
-            val kClass = ref.get()
+        // If the cached value is not a reference, it's an array of references
+        for (ref in cached as Array<*>) {
+            @Suppress("UNCHECKED_CAST")
+            val kClass = (ref as KClassReference).get() as KClassImpl<T>?
             if (kClass?.jClass == jClass) {
-                return kClass
+                return kClass!!
             }
         }
+    }
+
+    return createKotlinClass(name, jClass)
+}
+
+private fun <T : Any> createKotlinClass(name: String, jClass: Class<T>): KClassImpl<T> {
+    removeStaleKotlinClasses()
+
+    val newKClass = KClassImpl(jClass)
+    val newRef = KClassReference(newKClass, name)
+    while (true) {
+        val cached = K_CLASS_CACHE[name]
+        if (cached == null) {
+            if (K_CLASS_CACHE.putIfAbsent(name, newRef) == null) return newKClass
+            continue
+        }
 
-        // This is the most unlikely case: we found a cached array of references of length at least 2 (can't be 1 because
-        // the single element would be cached instead), and none of those classes is the one we're looking for
-        val size = cached.size
+        // Another thread may have cached a KClass for the same Class instance in the meantime
+        val refs = if (cached is KClassReference) arrayOf<Any>(cached) else cached as Array<*>
+        for (ref in refs) {
+            @Suppress("UNCHECKED_CAST")
+            val kClass = (ref as KClassReference).get() as KClassImpl<T>?
+            if (kClass?.jClass == jClass) {
+                return kClass!!
+            }
+        }
+
+        // This is the most unlikely case: the same class name is loaded by several class loaders.
         // Don't use Array constructor because it creates a lambda
-        val newArray = arrayOfNulls<WeakReference<KClassImpl<*>>>(size + 1)
-        // Don't use Arrays.copyOf because it works reflectively
-        System.arraycopy(cached, 0, newArray, 0, size)
-        val newKClass = KClassImpl(jClass)
-        newArray[size] = WeakReference(newKClass)
-        K_CLASS_CACHE = K_CLASS_CACHE.plus(name, newArray)
-        return newKClass
+        val alive = refs.filter { (it as KClassReference).get() != null }
+        val newArray = arrayOfNulls<Any>(alive.size + 1)
+        for (i in alive.indices) {
+            newArray[i] = alive[i]
+        }
+        newArray[alive.size] = newRef
+        if (K_CLASS_CACHE.replace(name, cached, if (newArray.size == 1) newRef else newArray)) return newKClass
     }
+}
 
-    val newKClass = KClassImpl(jClass)
-    K_CLASS_CACHE = K_CLASS_CACHE.plus(name, WeakReference(newKClass))
-    return newKClass
+private fun removeStaleKotlinClasses() {
+    while (true) {
+        val ref = K_CLASS_QUEUE.poll() as KClassReference? ?: return
+        removeStaleReference(ref)
+    }
+}
+
+private fun removeStaleReference(ref: KClassReference) {
+    val name = ref.name
+    while (true) {
+        val cached = K_CLASS_CACHE[name] ?: return
+        if (cached === ref) {
+            if (K_CLASS_CACHE.remove(name, cached)) return
+            continue
+        }
+        if (cached !is Array<*> || cached.none { it === ref }) return
+
+        val alive = cached.filter { it !== ref }
+        val newValue = if (alive.size == 1) alive[0]!! else alive.toTypedArray()
+        if (K_CLASS_CACHE.replace(name, cached, newValue)) return
+    }
 }
@@ -18,13 +18,29 @@ package kotlin.reflect.jvm.internal
 
 import org.jetbrains.kotlin.load.java.structure.reflect.safeClassLoader
 import org.jetbrains.kotlin.load.kotlin.reflect.RuntimeModuleData
+import java.lang.ref.ReferenceQueue
 import java.lang.ref.WeakReference
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentMap
 
-// TODO: collect nulls periodically
 private val moduleByClassLoader: ConcurrentMap<WeakClassLoaderBox, WeakReference<RuntimeModuleData>> = ConcurrentHashMap()
 
+// Module data holds its class loader, so once a class loader is discarded the module data is collected as well
+// and the entry is removed from the map when its reference is polled from this queue
+private val moduleQueue = ReferenceQueue<RuntimeModuleData>()
+
+private class ModuleReference(
+        module: RuntimeModuleData,
+        val key: WeakClassLoaderBox
+) : WeakReference<RuntimeModuleData>(module, moduleQueue)
+
+private fun removeStaleModules() {
+    while (true) {
+        val ref = moduleQueue.poll() as ModuleReference? ?: return
+        moduleByClassLoader.remove(ref.key, ref)
+    }
+}
+
 private class WeakClassLoaderBox(classLoader: ClassLoader) {
     val ref: WeakReference<ClassLoader> = WeakReference(classLoader)
 
@@ -55,10 +71,12 @@ internal fun Class<*>.getOrCreateModule(): RuntimeModuleData {
         moduleByClassLoader.remove(key, cached)
     }
 
+    removeStaleModules()
+
     val module = RuntimeModuleData.create(classLoader)
     try {
         while (true) {
-            val ref = moduleByClassLoader.putIfAbsent(key, WeakReference(module))
+            val ref = moduleByClassLoader.putIfAbsent(key, ModuleReference(module, key))
             if (ref == null) return module
 
             val result = ref.get()
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.jps.incremental
+
+import com.intellij.testFramework.UsefulTestCase
+import com.intellij.util.io.EnumeratorStringDescriptor
+import org.jetbrains.kotlin.incremental.storage.LazyStorage
+import org.jetbrains.kotlin.incremental.storage.StringCollectionExternalizer
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import java.io.File
+
+class LazyStorageTest : UsefulTestCase() {
+    private lateinit var storageFile: File
+    private lateinit var storage: LazyStorage<String, Collection<String>>
+
+    override fun setUp() {
+        super.setUp()
+        storageFile = File(KotlinTestUtils.tmpDir("lazyStorage"), "storage.tab")
+        storage = open()
+    }
+
+    override fun tearDown() {
+        storage.close()
+        super.tearDown()
+    }
+
+    private fun open() = LazyStorage(storageFile, EnumeratorStringDescriptor(), StringCollectionExternalizer)
+
+    private fun reopen() {
+        storage.close()
+        storage = open()
+    }
+
+    private fun assertValue(key: String, vararg expected: String) {
+        assertEquals(expected.toSet(), storage[key]?.toSet())
+    }
+
+    fun testSetThenAppend() {
+        storage["a"] = listOf("x")
+        storage.append("a", "y")
+        storage.append("a", "z")
+        assertValue("a", "x", "y", "z")
+        assertTrue("a" in storage)
+
+        reopen()
+        assertValue("a", "x", "y", "z")
+    }
+
+    fun testAppendToStoredValue() {
+        storage["a"] = listOf("x")
+        storage.flush(memoryCachesOnly = false)
+
+        storage.append("a", "y")
+        storage.append("a", "z")
+        assertValue("a", "x", "y", "z")
+
+        storage.flush(memoryCachesOnly = true)
+        assertValue("a", "x", "y", "z")
+
+        reopen()
+        assertValue("a", "x", "y", "z")
+    }
+
+    fun testAppendToMissingValue() {
+        storage.append("a", "x")
+        assertValue("a", "x")
+        assertTrue("a" in storage)
+
+        reopen()
+        assertValue("a", "x")
+    }
+
+    fun testRemoveThenAppend() {
+        storage["a"] = listOf("x")
+        storage["b"] = listOf("y")
+        reopen()
+
+        storage.remove("a")
+        storage.append("a", "z")
+        storage["b"] = listOf("u")
+        storage.remove("b")
+        storage.append("b", "v")
+        assertValue("a", "z")
+        assertValue("b", "v")
+
+        reopen()
+        assertValue("a", "z")
+        assertValue("b", "v")
+    }
+
+    fun testKeysWithPendingRemovals() {
+        storage["a"] = listOf("x")
+        storage["b"] = listOf("y")
+        reopen()
+
+        storage.remove("a")
+        storage["c"] = listOf("z")
+        storage.append("d", "w")
+        assertEquals(setOf("b", "c", "d"), storage.keys.toSet())
+        assertFalse("a" in storage)
+        assertNull(storage["a"])
+
+        reopen()
+        assertEquals(setOf("b", "c", "d"), storage.keys.toSet())
+        assertFalse("a" in storage)
+    }
+
+    fun testRemoveAfterAppend() {
+        storage["a"] = listOf("x")
+        reopen()
+
+        storage.append("a", "y")
+        storage.remove("a")
+        assertNull(storage["a"])
+        assertFalse("a" in storage)
+
+        reopen()
+        assertNull(storage["a"])
+        assertTrue(storage.keys.isEmpty())
+    }
+}
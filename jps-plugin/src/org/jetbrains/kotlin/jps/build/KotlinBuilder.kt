@@ -534,6 +534,8 @@ class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR) {
 
         assert(IncrementalCompilation.isEnabled()) { "updateKotlinIncrementalCache should not be called when incremental compilation disabled" }
 
+        readBytecodeInfoInParallel(generatedFiles)
+
         var changesInfo = CompilationResult.NO_CHANGES
         for (generatedFile in generatedFiles) {
             val ic = incrementalCaches[generatedFile.target]!!
@@ -577,7 +579,7 @@ class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR) {
         val removedFiles = chunk.targets.flatMap { KotlinSourceFileCollector.getRemovedKotlinFiles(dirtyFilesHolder, it) }
         lookupStorage.removeLookupsFrom(filesToCompile.values().asSequence() + removedFiles.asSequence())
 
-        lookupStorage.addAll(lookupTracker.lookups.entrySet(), lookupTracker.pathInterner.values)
+        lookupStorage.addAll(lookupTracker.lookups.entrySet(), lookupTracker.paths)
     }
 
     // if null is returned, nothing was done
@@ -28,8 +28,16 @@ public class TextOutputImpl implements TextOutput {
     }
 
     public TextOutputImpl(boolean compact) {
+        this(new StringBuilder(), compact);
+    }
+
+    /**
+     * Prints into the given buffer, so that the caller can presize it or surround the generated text
+     * without copying it once more. Text already in the buffer is not counted in position, line and column.
+     */
+    public TextOutputImpl(StringBuilder out, boolean compact) {
         this.compact = compact;
-        out = new StringBuilder();
+        this.out = out;
     }
 
     @Override
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.js.inline
 import com.google.dart.compiler.backend.js.ast.*
 import com.google.dart.compiler.backend.js.ast.metadata.inlineStrategy
 import com.google.gwt.dev.js.ThrowExceptionOnErrorReporter
+import com.intellij.openapi.util.io.FileUtil
 import com.intellij.util.containers.SLRUCache
 import org.jetbrains.kotlin.builtins.isExtensionFunctionType
 import org.jetbrains.kotlin.builtins.isFunctionTypeOrSubtype
@@ -36,6 +37,8 @@ import org.jetbrains.kotlin.resolve.inline.InlineStrategy
 import org.jetbrains.kotlin.utils.JsLibraryUtils
 import org.jetbrains.kotlin.utils.sure
 import java.io.File
+import java.lang.ref.SoftReference
+import java.util.concurrent.ConcurrentHashMap
 
 // TODO: add hash checksum to defineModule?
 /**
@@ -48,12 +51,14 @@ private val JS_IDENTIFIER="[$JS_IDENTIFIER_START][$JS_IDENTIFIER_PART]*"
 private val DEFINE_MODULE_PATTERN = ("($JS_IDENTIFIER)\\.defineModule\\(\\s*(['\"])(\\w+)\\2\\s*,\\s*(\\w+)\\s*\\)").toRegex().toPattern()
 private val DEFINE_MODULE_FIND_PATTERN = ".defineModule("
 
+private val DEFINE_INLINE_FUNCTION_FIND_PATTERN = ".${Namer.DEFINE_INLINE_FUNCTION}("
+
 class FunctionReader(private val context: TranslationContext) {
     /**
-     * Maps module name to .js file content, that contains this module definition.
+     * Maps module name to .js file, that contains this module definition.
      * One file can contain more than one module definition.
      */
-    private val moduleJsDefinition = hashMapOf<String, String>()
+    private val moduleJsDefinition = hashMapOf<String, JsLibraryFile>()
 
     /**
      * Maps module name to variable, that is used to call functions inside module.
@@ -69,48 +74,15 @@ class FunctionReader(private val context: TranslationContext) {
 
     init {
         val config = context.config as LibrarySourcesConfig
-        val libs = config.libraries.map { File(it) }
-
-        JsLibraryUtils.traverseJsLibraries(libs) { fileContent, path ->
-            var current = 0
-
-            while (true) {
-                var index = fileContent.indexOf(DEFINE_MODULE_FIND_PATTERN, current)
-                if (index < 0) break
-
-                current = index + 1
-                index = rewindToIdentifierStart(fileContent, index)
-                val preciseMatcher = DEFINE_MODULE_PATTERN.matcher(offset(fileContent, index))
-                if (!preciseMatcher.lookingAt()) continue
-
-                val moduleName = preciseMatcher.group(3)
-                val moduleVariable = preciseMatcher.group(4)
-                val kotlinVariable = preciseMatcher.group(1)
-                assert(moduleName !in moduleJsDefinition) { "Module is defined in more, than one file" }
-                moduleJsDefinition[moduleName] = fileContent
-                moduleRootVariable[moduleName] = moduleVariable
-                moduleKotlinVariable[moduleName] = kotlinVariable
-            }
-        }
-    }
 
-    private fun rewindToIdentifierStart(text: String, index: Int): Int {
-        var result = index
-        while (result > 0 && Character.isJavaIdentifierPart(text[result - 1])) {
-            --result
+        for (lib in config.libraries.map { File(it) }) {
+            for (module in getLibraryModules(lib)) {
+                assert(module.name !in moduleJsDefinition) { "Module is defined in more, than one file" }
+                moduleJsDefinition[module.name] = module.file
+                moduleRootVariable[module.name] = module.rootVariable
+                moduleKotlinVariable[module.name] = module.kotlinVariable
+            }
         }
-        return result
-    }
-
-    private fun offset(text: String, offset: Int) = object : CharSequence {
-        override val length: Int
-            get() = text.length - offset
-
-        override fun get(index: Int) = text[index + offset]
-
-        override fun subSequence(startIndex: Int, endIndex: Int) = text.subSequence(startIndex + offset, endIndex + offset)
-
-        override fun toString() = text.substring(offset)
     }
 
     private val functionCache = object : SLRUCache<CallableDescriptor, JsFunction>(50, 50) {
@@ -136,13 +108,12 @@ class FunctionReader(private val context: TranslationContext) {
         return function
     }
 
-    private fun readFunctionFromSource(descriptor: CallableDescriptor, source: String): JsFunction? {
+    private fun readFunctionFromSource(descriptor: CallableDescriptor, file: JsLibraryFile): JsFunction? {
+        val source = file.content
         val tag = Namer.getFunctionTag(descriptor)
-        val index = source.indexOf(tag)
-        if (index < 0) return null
+        var offset = file.findInlineFunction(tag)
+        if (offset < 0) return null
 
-        // + 1 for closing quote
-        var offset = index + tag.length + 1
         while (offset < source.length && source[offset].isWhitespaceOrComma) {
             offset++
         }
@@ -159,6 +130,127 @@ class FunctionReader(private val context: TranslationContext) {
     }
 }
 
+private class JsLibraryModule(val name: String, val rootVariable: String, val kotlinVariable: String, val file: JsLibraryFile)
+
+private class JsLibraryFile(val content: String) {
+    /**
+     * Maps tags of inline functions defined in the file to offsets right after their tag literals.
+     * Built on the first read of a function, so that the file is scanned once rather than once per function.
+     */
+    private val inlineFunctionOffsets by lazy { indexInlineFunctions(content) }
+
+    // Returns the offset right after the closing quote of the tag
+    fun findInlineFunction(tag: String): Int {
+        inlineFunctionOffsets[tag]?.let { return it }
+
+        // the call may not be recognized, e.g. in a minified file
+        val index = content.indexOf(tag)
+        return if (index < 0) -1 else index + tag.length + 1
+    }
+}
+
+private class JsLibraryModules(val length: Long, val lastModified: Long, val modules: List<JsLibraryModule>)
+
+/**
+ * Modules of archive libraries read by previous compilations in this process, e.g. in the daemon.
+ * Archives are reread when their size or modification time changes, other libraries are always read.
+ */
+private val libraryModulesCache = ConcurrentHashMap<String, SoftReference<JsLibraryModules>>()
+
+private fun getLibraryModules(lib: File): List<JsLibraryModule> {
+    if (!lib.isFile || !FileUtil.isJarOrZip(lib)) return readLibraryModules(lib)
+
+    val path = lib.absolutePath
+    val length = lib.length()
+    val lastModified = lib.lastModified()
+    val cached = libraryModulesCache[path]?.get()
+    if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+        return cached.modules
+    }
+
+    val modules = readLibraryModules(lib)
+    libraryModulesCache[path] = SoftReference(JsLibraryModules(length, lastModified, modules))
+    return modules
+}
+
+private fun readLibraryModules(lib: File): List<JsLibraryModule> {
+    val result = arrayListOf<JsLibraryModule>()
+
+    JsLibraryUtils.traverseJsLibrary(lib) { fileContent, path ->
+        val file = JsLibraryFile(fileContent)
+        var current = 0
+
+        while (true) {
+            var index = fileContent.indexOf(DEFINE_MODULE_FIND_PATTERN, current)
+            if (index < 0) break
+
+            current = index + 1
+            index = rewindToIdentifierStart(fileContent, index)
+            val preciseMatcher = DEFINE_MODULE_PATTERN.matcher(offset(fileContent, index))
+            if (!preciseMatcher.lookingAt()) continue
+
+            val moduleName = preciseMatcher.group(3)
+            val moduleVariable = preciseMatcher.group(4)
+            val kotlinVariable = preciseMatcher.group(1)
+            result.add(JsLibraryModule(moduleName, moduleVariable, kotlinVariable, file))
+        }
+    }
+
+    return result
+}
+
+/**
+ * Finds calls like Kotlin.defineInlineFunction("stdlib.kotlin.collections.map_xxx", function ...)
+ */
+private fun indexInlineFunctions(content: String): Map<String, Int> {
+    val result = hashMapOf<String, Int>()
+    var current = 0
+
+    while (true) {
+        val index = content.indexOf(DEFINE_INLINE_FUNCTION_FIND_PATTERN, current)
+        if (index < 0) break
+
+        current = index + DEFINE_INLINE_FUNCTION_FIND_PATTERN.length
+        while (current < content.length && content[current].isWhitespace()) {
+            current++
+        }
+        if (current >= content.length) break
+
+        val quote = content[current]
+        if (quote != '"' && quote != '\'') continue
+
+        val tagEnd = content.indexOf(quote, current + 1)
+        if (tagEnd < 0) break
+
+        val tag = content.substring(current + 1, tagEnd)
+        if (tag !in result) {
+            result[tag] = tagEnd + 1
+        }
+        current = tagEnd + 1
+    }
+
+    return result
+}
+
+private fun rewindToIdentifierStart(text: String, index: Int): Int {
+    var result = index
+    while (result > 0 && Character.isJavaIdentifierPart(text[result - 1])) {
+        --result
+    }
+    return result
+}
+
+private fun offset(text: String, offset: Int) = object : CharSequence {
+    override val length: Int
+        get() = text.length - offset
+
+    override fun get(index: Int) = text[index + offset]
+
+    override fun subSequence(startIndex: Int, endIndex: Int) = text.subSequence(startIndex + offset, endIndex + offset)
+
+    override fun toString() = text.substring(offset)
+}
+
 private val Char.isWhitespaceOrComma: Boolean
     get() = this == ',' || this.isWhitespace()
 
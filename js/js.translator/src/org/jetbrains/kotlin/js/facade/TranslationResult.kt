@@ -48,15 +48,22 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
         fun getCode(): String = getCode(TextOutputImpl(), sourceMapBuilder = null)
 
         fun getOutputFiles(outputFile: File, outputPrefixFile: File?, outputPostfixFile: File?): OutputFileCollection {
-            val output = TextOutputImpl()
+            val prefix = outputPrefixFile?.readText() ?: ""
+            val postfix = outputPostfixFile?.readText() ?: ""
+
+            // The code is printed right after the prefix into a buffer presized by the size of sources,
+            // so the whole file content is copied only once when the buffer is turned into a string
+            val content = StringBuilder(prefix.length + files.sumBy { it.textLength } + postfix.length).append(prefix)
+            val output = TextOutputImpl(content, false)
             val sourceMapBuilder = when {
                 config.isSourcemap -> SourceMap3Builder(outputFile, output, SourceMapBuilderConsumer())
                 else -> null
             }
 
-            val code = getCode(output, sourceMapBuilder)
-            val prefix = outputPrefixFile?.readText() ?: ""
-            val postfix = outputPostfixFile?.readText() ?: ""
+            sourceMapBuilder?.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
+            program.accept(JsSourceGenerationVisitor(output, sourceMapBuilder))
+            content.append(postfix)
+
             val sourceFiles = files.map {
                 val virtualFile = it.originalFile.virtualFile
 
@@ -66,7 +73,7 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
                 }
             }
 
-            val jsFile = SimpleOutputFile(sourceFiles, outputFile.name, prefix + code + postfix)
+            val jsFile = SimpleOutputFile(sourceFiles, outputFile.name, content.toString())
             val outputFiles = arrayListOf<OutputFile>(jsFile)
 
             if (config.isMetaInfo) {
@@ -85,7 +92,6 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
             }
 
             if (sourceMapBuilder != null) {
-                sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
                 val sourceMapFile = SimpleOutputFile(sourceFiles, sourceMapBuilder.outFile.name, sourceMapBuilder.build())
                 outputFiles.add(sourceMapFile)
             }
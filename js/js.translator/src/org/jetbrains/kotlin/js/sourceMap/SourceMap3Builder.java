@@ -96,7 +96,13 @@ public class SourceMap3Builder implements SourceMapBuilder {
 
     @Override
     public void skipLinesAtBeginning(int count) {
-        out.insert(0, StringUtil.repeatSymbol(';', count));
+        // Called before the code is generated, nothing has to be shifted in this case
+        if (out.length() == 0) {
+            StringUtil.repeatSymbol(out, ';', count);
+        }
+        else {
+            out.insert(0, StringUtil.repeatSymbol(';', count));
+        }
     }
 
     @Override